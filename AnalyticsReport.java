@@ -0,0 +1,161 @@
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.stream.Collectors;
+
+// Heavy historical reporting over the full data set. Every aggregate is a parallel stream
+// that groups by event (or by a key derived from the event), so work spreads across the
+// common fork/join pool and each partial result is merged once per key.
+// java EventManagementSystem analytics [--top N] [--csv FILE]
+public class AnalyticsReport {
+    private LinkedHashMap<String, Double> fillRateByType;
+    private TreeMap<String, Long> registrationsPerDay;
+    private LinkedHashMap<String, Long> topOrganizers;
+    private LinkedHashMap<String, Double> revenueByVenue;
+
+    private AnalyticsReport() {
+    }
+
+    public static AnalyticsReport compute(List<Person> users, List<Event> events,
+                                          List<Registration> registrations, int topN) {
+        AnalyticsReport report = new AnalyticsReport();
+
+        ConcurrentMap<String, Long> activeByEvent = registrations.parallelStream()
+                .filter(reg -> reg.getStatus().equals("ACTIVE"))
+                .collect(Collectors.groupingByConcurrent(Registration::getEventId, Collectors.counting()));
+
+        ConcurrentMap<String, long[]> seatsByType = events.parallelStream()
+                .collect(Collectors.toConcurrentMap(Event::getEventType,
+                        event -> new long[]{event.getRegisteredCount(), event.getCapacity()},
+                        (a, b) -> new long[]{a[0] + b[0], a[1] + b[1]}));
+        report.fillRateByType = new LinkedHashMap<>();
+        new TreeMap<>(seatsByType).forEach((type, seats) ->
+                report.fillRateByType.put(type, seats[1] == 0 ? 0.0 : (double) seats[0] / seats[1]));
+
+        report.registrationsPerDay = registrations.parallelStream()
+                .collect(Collectors.groupingBy(Registration::getRegistrationDate, TreeMap::new,
+                        Collectors.counting()));
+
+        ConcurrentMap<String, Long> attendanceByOrganizer = events.parallelStream()
+                .collect(Collectors.toConcurrentMap(Event::getOrganizerId,
+                        event -> activeByEvent.getOrDefault(event.getEventId(), 0L), Long::sum));
+        HashMap<String, String> names = new HashMap<>();
+        for (Person user : users) {
+            names.put(user.getId(), user.getName());
+        }
+        report.topOrganizers = new LinkedHashMap<>();
+        attendanceByOrganizer.entrySet().stream()
+                .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
+                .limit(topN)
+                .forEach(entry -> report.topOrganizers.put(
+                        names.getOrDefault(entry.getKey(), "?") + " (" + entry.getKey() + ")", entry.getValue()));
+
+        ConcurrentMap<String, Double> revenue = events.parallelStream()
+                .collect(Collectors.toConcurrentMap(Event::getVenue,
+                        event -> event.getRegisteredCount() * event.calculateCost(), Double::sum,
+                        ConcurrentHashMap::new));
+        report.revenueByVenue = new LinkedHashMap<>();
+        revenue.entrySet().stream()
+                .sorted(Map.Entry.<String, Double>comparingByValue().reversed())
+                .forEach(entry -> report.revenueByVenue.put(entry.getKey(), entry.getValue()));
+        return report;
+    }
+
+    public Map<String, Double> getFillRateByType() { return fillRateByType; }
+    public Map<String, Long> getRegistrationsPerDay() { return registrationsPerDay; }
+    public Map<String, Long> getTopOrganizers() { return topOrganizers; }
+    public Map<String, Double> getRevenueByVenue() { return revenueByVenue; }
+
+    public void print(PrintWriter out) {
+        out.println("=== FILL RATE BY EVENT TYPE ===");
+        fillRateByType.forEach((type, rate) -> out.printf("- %s: %.1f%%%n", type, rate * 100));
+        out.println("\n=== REGISTRATIONS PER DAY ===");
+        registrationsPerDay.forEach((day, count) -> out.println("- " + day + ": " + count));
+        out.println("\n=== TOP ORGANIZERS BY ATTENDANCE ===");
+        topOrganizers.forEach((organizer, count) -> out.println("- " + organizer + ": " + count));
+        out.println("\n=== REVENUE BY VENUE ===");
+        revenueByVenue.forEach((venue, amount) -> out.printf("- %s: $%.2f%n", venue, amount));
+        out.flush();
+    }
+
+    // RFC 4180: keys such as venues and organizer names may hold commas, quotes or line breaks
+    public void exportCsv(String file) throws IOException {
+        try (PrintWriter out = new PrintWriter(new BufferedWriter(new FileWriter(file, StandardCharsets.UTF_8)))) {
+            out.print("section,key,value\r\n");
+            fillRateByType.forEach((k, v) -> out.print("fill_rate," + csvField(k) + "," + v + "\r\n"));
+            registrationsPerDay.forEach((k, v) ->
+                    out.print("registrations_per_day," + csvField(k) + "," + v + "\r\n"));
+            topOrganizers.forEach((k, v) -> out.print("top_organizers," + csvField(k) + "," + v + "\r\n"));
+            revenueByVenue.forEach((k, v) -> out.print("revenue_by_venue," + csvField(k) + "," + v + "\r\n"));
+        }
+    }
+
+    private static String csvField(String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0
+                && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    public static void main(String[] args) {
+        int topN = 10;
+        String csvFile = null;
+        try {
+            for (int i = 0; i < args.length; i += 2) {
+                if (i + 1 == args.length) {
+                    throw new IllegalArgumentException("Missing value for " + args[i]);
+                }
+                switch (args[i]) {
+                    case "--top": topN = Integer.parseInt(args[i + 1]); break;
+                    case "--csv": csvFile = args[i + 1]; break;
+                    default: throw new IllegalArgumentException("Unknown option " + args[i]);
+                }
+            }
+        } catch (RuntimeException e) {
+            System.out.println("Invalid arguments: " + e.getMessage());
+            System.out.println("Usage: java EventManagementSystem analytics [--top N] [--csv FILE]");
+            return;
+        }
+
+        ArrayList<Person> users = new ArrayList<>();
+        ArrayList<Event> events = new ArrayList<>();
+        ArrayList<Registration> registrations = new ArrayList<>();
+        StorageEngine storage;
+        try {
+            storage = StorageEngine.open();
+            storage.load(users, events, registrations);
+        } catch (IOException e) {
+            System.err.println("Error loading data: " + e.getMessage());
+            return;
+        }
+
+        long start = System.nanoTime();
+        AnalyticsReport report = compute(users, events, registrations, topN);
+        double millis = (System.nanoTime() - start) / 1e6;
+
+        try {
+            if (csvFile != null) {
+                report.exportCsv(csvFile);
+                System.out.println("Wrote " + csvFile);
+            } else {
+                report.print(new PrintWriter(System.out));
+            }
+        } catch (IOException e) {
+            System.err.println("Error exporting analytics: " + e.getMessage());
+        }
+        System.out.printf("Computed over %d events and %d registrations in %.1f ms%n",
+                events.size(), registrations.size(), millis);
+        storage.close();
+    }
+}
\ No newline at end of file
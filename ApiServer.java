@@ -0,0 +1,502 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import exceptions.DuplicateRegistrationException;
+import exceptions.EventCapacityExceededException;
+import exceptions.EventNotFoundException;
+import exceptions.InvalidDateException;
+import exceptions.UserNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// java EventManagementSystem serve [port]
+//   POST   /api/login                {"userId": "..."}  -> {"token": "..."}
+//   GET    /api/events               ?date=dd-mm-yyyy | ?from=dd-mm-yyyy&to=dd-mm-yyyy | ?q=keywords[&limit=N]
+//                                    otherwise one page: ?sort=date|remaining|cost&type=&order=asc|desc
+//                                    &limit=N&cursor=<nextCursor from the previous page>
+//   GET    /api/events/{id}
+//   POST   /api/events/{id}/registrations  (organizer of the event, admin) {"userIds": "U1,U2,..."}
+//                                    registers the whole group or nobody
+//   GET    /api/registrations        (attendee) my registrations
+//   POST   /api/registrations        (attendee) {"eventId": "...", "waitlist": true} queues when full
+//   DELETE /api/registrations/{id}   (attendee) cancel
+//   GET    /api/reports              (admin)
+//   GET    /api/dashboard            (organizer: own events; admin: ?organizerId=) totals plus one
+//                                    page of events with seats sold/remaining and revenue,
+//                                    ?limit=N&cursor=<nextCursor from the previous page>
+//   GET    /metrics                  Prometheus text format, unauthenticated like any scrape target
+// Authenticated calls send "Authorization: Bearer <token>". Tokens expire after
+// -Dems.sessionTtlMinutes (default 60); at most -Dems.maxSessions (default 10000) are kept, the
+// oldest going first, and deleting a user ends their sessions.
+public class ApiServer {
+    private static final long SESSION_TTL_MS = Long.getLong("ems.sessionTtlMinutes", 60) * 60_000;
+    private static final int MAX_SESSIONS = Integer.getInteger("ems.maxSessions", 10000);
+    private static final int MAX_LIMIT = 500;
+
+    private EventManagementSystem system;
+    private HttpServer server;
+    private ExecutorService executor;
+    // token -> session in creation order, which with a fixed TTL is also expiry order
+    private LinkedHashMap<String, Session> sessions;
+
+    private static class Session {
+        private final String userId;
+        private final long expiresAt;
+
+        Session(String userId, long expiresAt) {
+            this.userId = userId;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private static class ApiException extends Exception {
+        private int status;
+
+        ApiException(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+
+    public ApiServer(EventManagementSystem system, int port) throws IOException {
+        this.system = system;
+        this.sessions = new LinkedHashMap<String, Session>() {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Session> eldest) {
+                return size() > MAX_SESSIONS;
+            }
+        };
+        system.onUserRemoved(user -> endSessions(user.getId()));
+        this.executor = newRequestExecutor();
+        this.server = HttpServer.create(new InetSocketAddress(port), 0);
+        server.createContext("/api/login", exchange -> handle(exchange, this::login, 2));
+        server.createContext("/api/events", exchange -> handle(exchange, this::events, 2, 3, 4));
+        server.createContext("/api/registrations", exchange -> handle(exchange, this::registrations, 2, 3));
+        server.createContext("/api/reports", exchange -> handle(exchange, this::reports, 2));
+        server.createContext("/api/dashboard", exchange -> handle(exchange, this::dashboard, 2));
+        server.createContext("/metrics", this::metrics);
+        server.setExecutor(executor);
+    }
+
+    public void start() {
+        server.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(this::stop));
+        System.out.println("API listening on port " + server.getAddress().getPort());
+    }
+
+    public void stop() {
+        server.stop(1);
+        executor.shutdown();
+        system.close();
+    }
+
+    // One virtual thread per request on JDK 21+, a cached platform pool on older runtimes
+    private static ExecutorService newRequestExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool();
+        }
+    }
+
+    private interface Route {
+        Object handle(HttpExchange exchange, String[] path) throws Exception;
+    }
+
+    // Contexts match by prefix, so the path is checked here: the context's own segment in full,
+    // no empty segments, and one of the segment counts the route serves
+    private void handle(HttpExchange exchange, Route route, int... segments) throws IOException {
+        int status = 200;
+        Object body;
+        try {
+            String context = exchange.getHttpContext().getPath();
+            String uri = exchange.getRequestURI().getPath();
+            String[] path = uri.substring(1).split("/");
+            if (!uri.equals(context) && !uri.startsWith(context + "/")
+                    || Arrays.asList(path).contains("")
+                    || Arrays.stream(segments).noneMatch(n -> n == path.length)) {
+                throw new ApiException(404, "Not found");
+            }
+            body = route.handle(exchange, path);
+        } catch (ApiException e) {
+            status = e.status;
+            body = error(e.getMessage());
+        } catch (UserNotFoundException | EventNotFoundException e) {
+            status = 404;
+            body = error(e.getMessage());
+        } catch (DuplicateRegistrationException | EventCapacityExceededException e) {
+            status = 409;
+            body = error(e.getMessage());
+        } catch (InvalidDateException | IllegalArgumentException e) {
+            status = 400;
+            body = error(e.getMessage());
+        } catch (UncheckedIOException e) {
+            // Storage refused the change (see StorageEngine.write); nothing was acknowledged
+            status = 503;
+            body = error(e.getMessage());
+        } catch (Exception e) {
+            status = 500;
+            body = error("Internal error: " + e.getMessage());
+        }
+
+        byte[] bytes = Json.toJson(body).getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private void metrics(HttpExchange exchange) throws IOException {
+        int status = 200;
+        String text = Instrumentation.prometheus();
+        if (!exchange.getRequestURI().getPath().equals("/metrics")) {
+            status = 404;
+            text = "Not found\n";
+        } else if (!exchange.getRequestMethod().equals("GET")) {
+            status = 405;
+            text = "Method not allowed\n";
+        }
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private Object login(HttpExchange exchange, String[] path) throws Exception {
+        requireMethod(exchange, "POST");
+        String userId = readBody(exchange).get("userId");
+        if (userId == null) {
+            throw new IllegalArgumentException("Missing userId");
+        }
+        Person user = system.searchUserById(userId);
+        String token = UUID.randomUUID().toString();
+        long now = System.currentTimeMillis();
+        synchronized (sessions) {
+            expireSessions(now);
+            sessions.put(token, new Session(user.getId(), now + SESSION_TTL_MS));
+        }
+
+        LinkedHashMap<String, Object> result = new LinkedHashMap<>();
+        result.put("token", token);
+        result.put("user", userJson(user));
+        return result;
+    }
+
+    private Object events(HttpExchange exchange, String[] path) throws Exception {
+        if (path.length == 4) {
+            if (!path[3].equals("registrations")) {
+                throw new ApiException(404, "Not found");
+            }
+            return groupRegistration(exchange, path[2]);
+        }
+        requireMethod(exchange, "GET");
+        if (path.length == 3) {
+            Event event = system.getEvent(path[2]);
+            if (event == null) {
+                throw new EventNotFoundException("Event not found!");
+            }
+            return eventJson(event);
+        }
+
+        Map<String, String> query = query(exchange);
+        Collection<Event> found;
+        if (query.containsKey("q")) {
+            found = Arrays.asList(system.searchEventsByKeyword(query.get("q"), limit(query, 20)));
+        } else if (query.containsKey("date")) {
+            found = Arrays.asList(system.searchEventsByDate(query.get("date")));
+        } else if (query.containsKey("from") || query.containsKey("to")) {
+            LocalDate from = EventDateIndex.parseDate(query.get("from"));
+            LocalDate to = EventDateIndex.parseDate(query.get("to"));
+            if (from == null || to == null) {
+                throw new InvalidDateException("from and to must be dd-mm-yyyy");
+            }
+            found = Arrays.asList(system.searchEventsBetween(from, to));
+        } else {
+            return eventPage(query);
+        }
+
+        ArrayList<Object> result = new ArrayList<>();
+        for (Event event : found) {
+            result.add(eventJson(event));
+        }
+        return result;
+    }
+
+    private Object groupRegistration(HttpExchange exchange, String eventId) throws Exception {
+        requireMethod(exchange, "POST");
+        Person user = authenticate(exchange, "ORGANIZER", "ADMIN");
+        Event event = system.getEvent(eventId);
+        if (event == null) {
+            throw new EventNotFoundException("Event not found!");
+        }
+        if (user.getRole().equals("ORGANIZER") && !event.getOrganizerId().equals(user.getId())) {
+            throw new ApiException(403, "Not the organizer of this event");
+        }
+        String userIds = readBody(exchange).get("userIds");
+        if (userIds == null) {
+            throw new IllegalArgumentException("Missing userIds");
+        }
+        ArrayList<String> ids = new ArrayList<>();
+        for (String id : userIds.split(",")) {
+            if (!id.trim().isEmpty()) {
+                ids.add(id.trim());
+            }
+        }
+
+        ArrayList<Object> result = new ArrayList<>();
+        for (Registration reg : system.registerGroup(eventId, ids)) {
+            result.add(registrationJson(reg));
+        }
+        return result;
+    }
+
+    private Object eventPage(Map<String, String> query) {
+        int limit = limit(query, 50);
+        String type = query.get("type");
+        EventListing.Page page = system.listEvents(query.getOrDefault("sort", EventListing.SORT_DATE),
+                type == null ? null : type.toUpperCase(), "desc".equalsIgnoreCase(query.get("order")),
+                query.get("cursor"), limit);
+
+        ArrayList<Object> events = new ArrayList<>();
+        for (Event event : page.getEvents()) {
+            events.add(eventJson(event));
+        }
+        LinkedHashMap<String, Object> result = new LinkedHashMap<>();
+        result.put("events", events);
+        result.put("nextCursor", page.getNextCursor());
+        return result;
+    }
+
+    private Object registrations(HttpExchange exchange, String[] path) throws Exception {
+        Person user = authenticate(exchange, "ATTENDEE");
+        RegistrationService service = system.getRegistrationService();
+        String method = exchange.getRequestMethod();
+        if (path.length == 3 && !method.equals("DELETE")) {
+            throw new ApiException(404, "Not found");
+        }
+        switch (method) {
+            case "GET": {
+                ArrayList<Object> result = new ArrayList<>();
+                for (Registration reg : service.getHistoryByUser(user.getId())) {
+                    result.add(registrationJson(reg));
+                }
+                return result;
+            }
+            case "POST": {
+                Map<String, String> body = readBody(exchange);
+                String eventId = body.get("eventId");
+                if (eventId == null) {
+                    throw new IllegalArgumentException("Missing eventId");
+                }
+                Registration reg = "true".equals(body.get("waitlist"))
+                        ? service.joinWaitlist(user.getId(), eventId)
+                        : service.register(user.getId(), eventId);
+                Map<String, Object> result = registrationJson(reg);
+                if (reg.getStatus().equals("WAITLISTED")) {
+                    result.put("waitlistPosition", service.waitlistPosition(reg));
+                }
+                return result;
+            }
+            case "DELETE":
+                if (path.length < 3) {
+                    throw new ApiException(405, "DELETE needs a registration ID");
+                }
+                return registrationJson(service.cancel(user.getId(), path[2]));
+            default:
+                throw new ApiException(405, "Method not allowed");
+        }
+    }
+
+    private Object reports(HttpExchange exchange, String[] path) throws Exception {
+        requireMethod(exchange, "GET");
+        authenticate(exchange, "ADMIN");
+        return system.getReportCounts();
+    }
+
+    // Reads the organizer's own events through the organizer index, never the whole catalog
+    private Object dashboard(HttpExchange exchange, String[] path) throws Exception {
+        requireMethod(exchange, "GET");
+        Person user = authenticate(exchange, "ORGANIZER", "ADMIN");
+        Map<String, String> query = query(exchange);
+        String organizerId = user.getId();
+        if (user.getRole().equals("ADMIN")) {
+            organizerId = query.get("organizerId");
+            if (organizerId == null) {
+                throw new IllegalArgumentException("Missing organizerId");
+            }
+        }
+        int limit = limit(query, 50);
+        EventListing.Page page = system.listOrganizerEvents(organizerId, query.get("cursor"), limit);
+
+        ArrayList<Object> events = new ArrayList<>();
+        for (Event event : page.getEvents()) {
+            events.add(system.getEventCache().summary(event, "dashboard",
+                    e -> new Json.Raw(Json.toJson(dashboardFields(e)))));
+        }
+        ReportMetrics.OrganizerTotals totals = system.getMetrics().getOrganizerTotals(organizerId);
+        LinkedHashMap<String, Object> summary = new LinkedHashMap<>();
+        summary.put("events", totals.getEvents());
+        summary.put("capacity", totals.getCapacity());
+        summary.put("seatsSold", totals.getSeatsSold());
+        summary.put("seatsRemaining", totals.getSeatsRemaining());
+        summary.put("revenue", totals.getRevenue());
+
+        LinkedHashMap<String, Object> result = new LinkedHashMap<>();
+        result.put("organizerId", organizerId);
+        result.put("totals", summary);
+        result.put("events", events);
+        result.put("nextCursor", page.getNextCursor());
+        return result;
+    }
+
+    private static int limit(Map<String, String> query, int defaultLimit) {
+        int limit = query.containsKey("limit") ? Integer.parseInt(query.get("limit")) : defaultLimit;
+        if (limit < 1 || limit > MAX_LIMIT) {
+            throw new IllegalArgumentException("limit must be between 1 and " + MAX_LIMIT);
+        }
+        return limit;
+    }
+
+    // Caller holds the sessions lock
+    private void expireSessions(long now) {
+        Iterator<Session> it = sessions.values().iterator();
+        while (it.hasNext() && it.next().expiresAt <= now) {
+            it.remove();
+        }
+    }
+
+    private void endSessions(String userId) {
+        synchronized (sessions) {
+            sessions.values().removeIf(session -> session.userId.equals(userId));
+        }
+    }
+
+    // The session only names the user; role and existence come from the live user map
+    private Person authenticate(HttpExchange exchange, String... roles) throws ApiException {
+        String header = exchange.getRequestHeaders().getFirst("Authorization");
+        Session session = null;
+        if (header != null && header.startsWith("Bearer ")) {
+            String token = header.substring(7).trim();
+            synchronized (sessions) {
+                session = sessions.get(token);
+                if (session != null && session.expiresAt <= System.currentTimeMillis()) {
+                    sessions.remove(token);
+                    session = null;
+                }
+            }
+        }
+        Person user = session == null ? null : system.getUser(session.userId);
+        if (user == null) {
+            throw new ApiException(401, "Login required");
+        }
+        if (!Arrays.asList(roles).contains(user.getRole())) {
+            throw new ApiException(403, "Requires role " + String.join(" or ", roles));
+        }
+        return user;
+    }
+
+    private static void requireMethod(HttpExchange exchange, String method) throws ApiException {
+        if (!exchange.getRequestMethod().equals(method)) {
+            throw new ApiException(405, "Method not allowed");
+        }
+    }
+
+    private static Map<String, String> readBody(HttpExchange exchange) throws IOException {
+        try (InputStream in = exchange.getRequestBody()) {
+            String body = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+            return body.trim().isEmpty() ? new HashMap<>() : Json.parseObject(body);
+        }
+    }
+
+    private static Map<String, String> query(HttpExchange exchange) {
+        HashMap<String, String> params = new HashMap<>();
+        String raw = exchange.getRequestURI().getRawQuery();
+        if (raw == null) {
+            return params;
+        }
+        for (String pair : raw.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq > 0) {
+                params.put(URLDecoder.decode(pair.substring(0, eq), StandardCharsets.UTF_8),
+                        URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return params;
+    }
+
+    private static Map<String, Object> error(String message) {
+        LinkedHashMap<String, Object> result = new LinkedHashMap<>();
+        result.put("error", message);
+        return result;
+    }
+
+    private static Map<String, Object> userJson(Person user) {
+        LinkedHashMap<String, Object> result = new LinkedHashMap<>();
+        result.put("id", user.getId());
+        result.put("name", user.getName());
+        result.put("email", user.getEmail());
+        result.put("role", user.getRole());
+        return result;
+    }
+
+    private Object eventJson(Event event) {
+        return system.getEventCache().summary(event, "json", e -> new Json.Raw(Json.toJson(eventFields(e))));
+    }
+
+    private static Map<String, Object> eventFields(Event event) {
+        LinkedHashMap<String, Object> result = new LinkedHashMap<>();
+        result.put("id", event.getEventId());
+        result.put("title", event.getTitle());
+        result.put("type", event.getEventType());
+        result.put("description", event.getDescription());
+        result.put("date", event.getDate());
+        result.put("venue", event.getVenue());
+        result.put("capacity", event.getCapacity());
+        result.put("available", event.getCapacity() - event.getRegisteredCount());
+        result.put("cost", event.calculateCost());
+        result.put("organizerId", event.getOrganizerId());
+        return result;
+    }
+
+    private static Map<String, Object> dashboardFields(Event event) {
+        int sold = event.getRegisteredCount();
+        LinkedHashMap<String, Object> result = new LinkedHashMap<>();
+        result.put("id", event.getEventId());
+        result.put("title", event.getTitle());
+        result.put("type", event.getEventType());
+        result.put("date", event.getDate());
+        result.put("capacity", event.getCapacity());
+        result.put("sold", sold);
+        result.put("remaining", event.getCapacity() - sold);
+        result.put("revenue", sold * event.calculateCost());
+        return result;
+    }
+
+    private static Map<String, Object> registrationJson(Registration reg) {
+        LinkedHashMap<String, Object> result = new LinkedHashMap<>();
+        result.put("id", reg.getRegistrationId());
+        result.put("userId", reg.getUserId());
+        result.put("eventId", reg.getEventId());
+        result.put("date", reg.getRegistrationDate());
+        result.put("status", reg.getStatus());
+        return result;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,399 @@
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.zip.CRC32;
+
+public class BinarySnapshot {
+    private static final int MAGIC = 0x454D5331; // "EMS1"
+    // Version 2 appends a CRC32 of everything before it; version 1 files still load unverified
+    private static final int VERSION = 2;
+    private static final int UNCHECKED_VERSION = 1;
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private static final byte ROLE_ADMIN = 0;
+    private static final byte ROLE_ORGANIZER = 1;
+    private static final byte ROLE_ATTENDEE = 2;
+    private static final byte TYPE_CONFERENCE = 0;
+    private static final byte TYPE_WORKSHOP = 1;
+    private static final byte TYPE_CONCERT = 2;
+
+    private ArrayList<Person> users;
+    private ArrayList<Event> events;
+    private ArrayList<Registration> registrations;
+
+    private BinarySnapshot(ArrayList<Person> users, ArrayList<Event> events,
+                           ArrayList<Registration> registrations) {
+        this.users = users;
+        this.events = events;
+        this.registrations = registrations;
+    }
+
+    public ArrayList<Person> getUsers() { return users; }
+    public ArrayList<Event> getEvents() { return events; }
+    public ArrayList<Registration> getRegistrations() { return registrations; }
+
+    // Layout: header, string table, users, events, registrations. Every string field
+    // is an index into the table, so repeated user/event/organizer IDs are stored once.
+    public static void save(String file, ArrayList<Person> users, ArrayList<Event> events,
+                            ArrayList<Registration> registrations) throws IOException {
+        StringTable table = new StringTable();
+        for (Person user : users) {
+            table.add(user.getId());
+            table.add(user.getName());
+            table.add(user.getEmail());
+            table.add(user.getPhone());
+        }
+        for (Event event : events) {
+            table.add(event.getEventId());
+            table.add(event.getTitle());
+            table.add(event.getDescription());
+            table.add(event.getDate());
+            table.add(event.getVenue());
+            table.add(event.getOrganizerId());
+            if (event instanceof Concert) {
+                table.add(((Concert) event).getArtist());
+            }
+        }
+        for (Registration reg : registrations) {
+            table.add(reg.getRegistrationId());
+            table.add(reg.getUserId());
+            table.add(reg.getEventId());
+            table.add(reg.getRegistrationDate());
+            table.add(reg.getStatus());
+        }
+
+        FileHandler.writeAtomically(file, channel -> {
+            ChannelWriter out = new ChannelWriter(channel);
+            out.putInt(MAGIC);
+            out.putInt(VERSION);
+
+            out.putInt(table.strings.size());
+            for (String s : table.strings) {
+                out.putBytes(s.getBytes(StandardCharsets.UTF_8));
+            }
+
+            out.putInt(users.size());
+            for (Person user : users) {
+                out.putByte(roleCode(user.getRole()));
+                out.putInt(table.ref(user.getId()));
+                out.putInt(table.ref(user.getName()));
+                out.putInt(table.ref(user.getEmail()));
+                out.putInt(table.ref(user.getPhone()));
+            }
+
+            out.putInt(events.size());
+            for (Event event : events) {
+                out.putByte(typeCode(event.getEventType()));
+                out.putInt(table.ref(event.getEventId()));
+                out.putInt(table.ref(event.getTitle()));
+                out.putInt(table.ref(event.getDescription()));
+                out.putInt(table.ref(event.getDate()));
+                out.putInt(table.ref(event.getVenue()));
+                out.putInt(event.getCapacity());
+                out.putInt(event.getRegisteredCount());
+                out.putInt(table.ref(event.getOrganizerId()));
+                if (event instanceof Conference) {
+                    out.putInt(((Conference) event).getNumberOfSpeakers());
+                } else if (event instanceof Workshop) {
+                    out.putInt(((Workshop) event).getDuration());
+                } else {
+                    out.putInt(table.ref(((Concert) event).getArtist()));
+                }
+            }
+
+            out.putInt(registrations.size());
+            for (Registration reg : registrations) {
+                out.putInt(table.ref(reg.getRegistrationId()));
+                out.putInt(table.ref(reg.getUserId()));
+                out.putInt(table.ref(reg.getEventId()));
+                out.putInt(table.ref(reg.getRegistrationDate()));
+                out.putInt(table.ref(reg.getStatus()));
+            }
+            out.flush();
+            ByteBuffer trailer = ByteBuffer.allocate(4).putInt((int) out.crc.getValue());
+            trailer.flip();
+            while (trailer.hasRemaining()) {
+                channel.write(trailer);
+            }
+        });
+    }
+
+    public static BinarySnapshot load(String file) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(file), StandardOpenOption.READ)) {
+            ChannelReader in = new ChannelReader(channel);
+            if (in.getInt() != MAGIC) {
+                throw new IOException(file + " is not a snapshot file");
+            }
+            int version = in.getInt();
+            if (version == VERSION) {
+                verifyChecksum(file, channel);
+            } else if (version != UNCHECKED_VERSION) {
+                throw new IOException("Unsupported snapshot version " + version);
+            }
+
+            String[] strings = new String[in.getInt()];
+            for (int i = 0; i < strings.length; i++) {
+                strings[i] = new String(in.getBytes(), StandardCharsets.UTF_8);
+            }
+
+            int userCount = in.getInt();
+            ArrayList<Person> users = new ArrayList<>(userCount);
+            for (int i = 0; i < userCount; i++) {
+                byte role = in.getByte();
+                String id = strings[in.getInt()], name = strings[in.getInt()],
+                        email = strings[in.getInt()], phone = strings[in.getInt()];
+                switch (role) {
+                    case ROLE_ADMIN:
+                        users.add(new Admin(id, name, email, phone));
+                        break;
+                    case ROLE_ORGANIZER:
+                        users.add(new Organizer(id, name, email, phone));
+                        break;
+                    case ROLE_ATTENDEE:
+                        users.add(new Attendee(id, name, email, phone));
+                        break;
+                    default:
+                        throw new IOException("Unknown role code " + role);
+                }
+            }
+
+            int eventCount = in.getInt();
+            ArrayList<Event> events = new ArrayList<>(eventCount);
+            for (int i = 0; i < eventCount; i++) {
+                byte type = in.getByte();
+                String eventId = strings[in.getInt()], title = strings[in.getInt()],
+                        description = strings[in.getInt()], date = strings[in.getInt()],
+                        venue = strings[in.getInt()];
+                int capacity = in.getInt();
+                int registeredCount = in.getInt();
+                String organizerId = strings[in.getInt()];
+                Event event;
+                switch (type) {
+                    case TYPE_CONFERENCE:
+                        event = new Conference(eventId, title, description, date, venue,
+                                capacity, organizerId, in.getInt());
+                        break;
+                    case TYPE_WORKSHOP:
+                        event = new Workshop(eventId, title, description, date, venue,
+                                capacity, organizerId, in.getInt());
+                        break;
+                    case TYPE_CONCERT:
+                        event = new Concert(eventId, title, description, date, venue,
+                                capacity, organizerId, strings[in.getInt()]);
+                        break;
+                    default:
+                        throw new IOException("Unknown event type code " + type);
+                }
+                event.setRegisteredCount(registeredCount);
+                events.add(event);
+            }
+
+            int regCount = in.getInt();
+            ArrayList<Registration> registrations = new ArrayList<>(regCount);
+            for (int i = 0; i < regCount; i++) {
+                registrations.add(new Registration(strings[in.getInt()], strings[in.getInt()],
+                        strings[in.getInt()], strings[in.getInt()], strings[in.getInt()]));
+            }
+            return new BinarySnapshot(users, events, registrations);
+        }
+    }
+
+    // A separate pass before parsing; CRC32 runs at memory speed and the file is in the page cache
+    private static void verifyChecksum(String file, FileChannel channel) throws IOException {
+        long size = channel.size();
+        if (size < 12) {
+            throw new EOFException("Truncated snapshot");
+        }
+        CRC32 crc = new CRC32();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        long position = 0;
+        long end = size - 4;
+        while (position < end) {
+            buffer.clear();
+            buffer.limit((int) Math.min(buffer.capacity(), end - position));
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new EOFException("Truncated snapshot");
+            }
+            buffer.flip();
+            crc.update(buffer);
+            position += read;
+        }
+        ByteBuffer trailer = ByteBuffer.allocate(4);
+        while (trailer.hasRemaining()) {
+            if (channel.read(trailer, end + trailer.position()) < 0) {
+                throw new EOFException("Truncated snapshot");
+            }
+        }
+        trailer.flip();
+        if (trailer.getInt() != (int) crc.getValue()) {
+            throw new IOException("checksum mismatch in " + file);
+        }
+    }
+
+    private static byte roleCode(String role) {
+        switch (role) {
+            case "ADMIN": return ROLE_ADMIN;
+            case "ORGANIZER": return ROLE_ORGANIZER;
+            default: return ROLE_ATTENDEE;
+        }
+    }
+
+    private static byte typeCode(String eventType) {
+        switch (eventType) {
+            case "CONFERENCE": return TYPE_CONFERENCE;
+            case "WORKSHOP": return TYPE_WORKSHOP;
+            default: return TYPE_CONCERT;
+        }
+    }
+
+    private static class StringTable {
+        private HashMap<String, Integer> refs = new HashMap<>();
+        private ArrayList<String> strings = new ArrayList<>();
+
+        void add(String s) {
+            if (!refs.containsKey(s)) {
+                refs.put(s, strings.size());
+                strings.add(s);
+            }
+        }
+
+        int ref(String s) {
+            return refs.get(s);
+        }
+    }
+
+    private static class ChannelWriter {
+        private FileChannel channel;
+        private ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        private CRC32 crc = new CRC32();
+
+        ChannelWriter(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        void putByte(byte b) throws IOException {
+            ensure(1);
+            buffer.put(b);
+        }
+
+        void putInt(int i) throws IOException {
+            ensure(4);
+            buffer.putInt(i);
+        }
+
+        void putBytes(byte[] bytes) throws IOException {
+            putInt(bytes.length);
+            if (bytes.length > buffer.capacity()) {
+                flush();
+                ByteBuffer large = ByteBuffer.wrap(bytes);
+                crc.update(bytes);
+                while (large.hasRemaining()) {
+                    channel.write(large);
+                }
+                return;
+            }
+            ensure(bytes.length);
+            buffer.put(bytes);
+        }
+
+        void flush() throws IOException {
+            buffer.flip();
+            crc.update(buffer.duplicate());
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        private void ensure(int n) throws IOException {
+            if (buffer.remaining() < n) {
+                flush();
+            }
+        }
+    }
+
+    private static class ChannelReader {
+        private FileChannel channel;
+        private ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+        ChannelReader(FileChannel channel) {
+            this.channel = channel;
+            buffer.flip();
+        }
+
+        byte getByte() throws IOException {
+            ensure(1);
+            return buffer.get();
+        }
+
+        int getInt() throws IOException {
+            ensure(4);
+            return buffer.getInt();
+        }
+
+        byte[] getBytes() throws IOException {
+            int length = getInt();
+            byte[] bytes = new byte[length];
+            if (length > buffer.capacity()) {
+                int buffered = buffer.remaining();
+                buffer.get(bytes, 0, buffered);
+                ByteBuffer large = ByteBuffer.wrap(bytes, buffered, length - buffered);
+                while (large.hasRemaining()) {
+                    if (channel.read(large) < 0) {
+                        throw new EOFException("Truncated snapshot");
+                    }
+                }
+                return bytes;
+            }
+            ensure(length);
+            buffer.get(bytes);
+            return bytes;
+        }
+
+        private void ensure(int n) throws IOException {
+            if (buffer.remaining() >= n) {
+                return;
+            }
+            buffer.compact();
+            while (buffer.position() < n) {
+                if (channel.read(buffer) < 0) {
+                    throw new EOFException("Truncated snapshot");
+                }
+            }
+            buffer.flip();
+        }
+    }
+
+    // java BinarySnapshot import|export  converts between the CSV files and snapshot.bin
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.out.println("Usage: java BinarySnapshot import|export");
+            return;
+        }
+        Path snapshot = Paths.get(FileHandler.SNAPSHOT_FILE);
+        switch (args[0]) {
+            case "import":
+                save(snapshot.toString(), FileHandler.loadUsers(), FileHandler.loadEvents(),
+                        FileHandler.loadRegistrations());
+                System.out.println("Wrote " + snapshot);
+                break;
+            case "export":
+                BinarySnapshot loaded = load(snapshot.toString());
+                FileHandler.saveUsers(loaded.getUsers());
+                FileHandler.saveEvents(loaded.getEvents());
+                FileHandler.saveRegistrations(loaded.getRegistrations());
+                System.out.println("Exported " + snapshot + " to CSV");
+                break;
+            default:
+                System.out.println("Unknown command: " + args[0]);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,303 @@
+import exceptions.DuplicateRegistrationException;
+import exceptions.EventCapacityExceededException;
+import exceptions.EventNotFoundException;
+import exceptions.InvalidDateException;
+import exceptions.UserNotFoundException;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Batch onboarding: java EventManagementSystem import [--users F] [--events F] [--registrations F]
+// Files ending in .jsonl hold one JSON object per line, anything else is read as CSV:
+//   users:         id,name,email,phone,role                (blank id = generate one)
+//   events:        id,title,description,date,venue,capacity,organizerId,type,detail
+//   registrations: userId,eventId[,registrationDate]        (yyyy-MM-dd, default today)
+// Rows are validated as they stream in; the accepted ones are written in one checkpoint at the end.
+public class BulkImporter {
+    private static final String REJECTS_FILE = "import-rejects.txt";
+    private static final String[] USER_COLUMNS = {"id", "name", "email", "phone", "role"};
+    private static final String[] EVENT_COLUMNS = {"id", "title", "description", "date", "venue",
+            "capacity", "organizerId", "type", "detail"};
+    private static final String[] REGISTRATION_COLUMNS = {"userId", "eventId", "registrationDate"};
+
+    private interface RowHandler {
+        void accept(Map<String, String> row) throws Exception;
+    }
+
+    private ArrayList<Person> users;
+    private ArrayList<Event> events;
+    private ArrayList<Registration> registrations;
+    private HashMap<String, Person> userMap;
+    private HashMap<String, Event> eventMap;
+    private HashMap<String, String> registeredPairs; // "user:event" -> ACTIVE or WAITLISTED
+    private PrintWriter rejects;
+    private int accepted;
+    private int rejected;
+
+    public BulkImporter(ArrayList<Person> users, ArrayList<Event> events,
+                        ArrayList<Registration> registrations, PrintWriter rejects) {
+        this.users = users;
+        this.events = events;
+        this.registrations = registrations;
+        this.rejects = rejects;
+        userMap = new HashMap<>();
+        eventMap = new HashMap<>();
+        registeredPairs = new HashMap<>();
+        for (Person user : users) {
+            userMap.put(user.getId(), user);
+        }
+        for (Event event : events) {
+            eventMap.put(event.getEventId(), event);
+        }
+        for (Registration reg : registrations) {
+            if (reg.getStatus().equals("ACTIVE") || reg.getStatus().equals("WAITLISTED")) {
+                registeredPairs.put(reg.getUserId() + ":" + reg.getEventId(), reg.getStatus());
+            }
+        }
+    }
+
+    public int getAccepted() { return accepted; }
+    public int getRejected() { return rejected; }
+
+    public void importUsers(String file) throws IOException {
+        stream(file, USER_COLUMNS, row -> {
+            String name = required(row, "name");
+            String email = required(row, "email");
+            if (!EventManagementSystem.validateEmail(email)) {
+                throw new IllegalArgumentException("Invalid email format!");
+            }
+            String id = row.get("id");
+            if (id == null || id.isEmpty()) {
+                id = EventManagementSystem.generateId("U");
+            } else if (userMap.containsKey(id)) {
+                throw new IllegalArgumentException("Duplicate user ID " + id);
+            }
+            String phone = row.getOrDefault("phone", "");
+            Person user;
+            switch (required(row, "role").toUpperCase()) {
+                case "ADMIN":
+                    user = new Admin(id, name, email, phone);
+                    break;
+                case "ORGANIZER":
+                    user = new Organizer(id, name, email, phone);
+                    break;
+                case "ATTENDEE":
+                    user = new Attendee(id, name, email, phone);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Invalid role " + row.get("role"));
+            }
+            users.add(user);
+            userMap.put(id, user);
+        });
+    }
+
+    public void importEvents(String file) throws IOException {
+        stream(file, EVENT_COLUMNS, row -> {
+            String title = required(row, "title");
+            String date = required(row, "date");
+            if (!EventManagementSystem.validateDate(date)) {
+                throw new InvalidDateException("Invalid date format or past date!");
+            }
+            int capacity = Integer.parseInt(required(row, "capacity"));
+            if (capacity <= 0) {
+                throw new IllegalArgumentException("Capacity must be positive!");
+            }
+            String organizerId = required(row, "organizerId");
+            Person organizer = userMap.get(organizerId);
+            if (organizer == null) {
+                throw new UserNotFoundException("Organizer " + organizerId + " not found");
+            }
+            if (!organizer.getRole().equals("ORGANIZER") && !organizer.getRole().equals("ADMIN")) {
+                throw new IllegalArgumentException("User " + organizerId + " is not an organizer");
+            }
+            String id = row.get("id");
+            if (id == null || id.isEmpty()) {
+                id = EventManagementSystem.generateId("E");
+            } else if (eventMap.containsKey(id)) {
+                throw new IllegalArgumentException("Duplicate event ID " + id);
+            }
+            String description = row.getOrDefault("description", "");
+            String venue = row.getOrDefault("venue", "");
+            String detail = row.get("detail");
+            Event event;
+            switch (required(row, "type").toUpperCase()) {
+                case "CONFERENCE":
+                    event = new Conference(id, title, description, date, venue, capacity, organizerId,
+                            detail == null || detail.isEmpty() ? 5 : Integer.parseInt(detail));
+                    break;
+                case "WORKSHOP":
+                    event = new Workshop(id, title, description, date, venue, capacity, organizerId,
+                            detail == null || detail.isEmpty() ? 8 : Integer.parseInt(detail));
+                    break;
+                case "CONCERT":
+                    event = new Concert(id, title, description, date, venue, capacity, organizerId,
+                            detail == null || detail.isEmpty() ? "Unknown Artist" : detail);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Invalid event type " + row.get("type"));
+            }
+            events.add(event);
+            eventMap.put(id, event);
+        });
+    }
+
+    public void importRegistrations(String file) throws IOException {
+        String today = LocalDate.now().toString();
+        stream(file, REGISTRATION_COLUMNS, row -> {
+            String userId = required(row, "userId");
+            String eventId = required(row, "eventId");
+            Person user = userMap.get(userId);
+            if (user == null) {
+                throw new UserNotFoundException("User " + userId + " not found");
+            }
+            if (!user.getRole().equals("ATTENDEE")) {
+                throw new IllegalArgumentException("User " + userId + " is not an attendee");
+            }
+            String date = row.get("registrationDate");
+            if (date != null && !date.isEmpty()) {
+                try {
+                    date = LocalDate.parse(date).toString();
+                } catch (DateTimeParseException e) {
+                    throw new InvalidDateException("Invalid registration date " + date + " (expected yyyy-MM-dd)");
+                }
+            }
+            Event event = eventMap.get(eventId);
+            if (event == null) {
+                throw new EventNotFoundException("Event " + eventId + " not found");
+            }
+            String pair = userId + ":" + eventId;
+            String status = registeredPairs.get(pair);
+            if (status != null) {
+                throw new DuplicateRegistrationException(status.equals("WAITLISTED")
+                        ? "Already on the waitlist for this event!" : "Already registered for this event!");
+            }
+            if (!event.incrementRegistration()) {
+                throw new EventCapacityExceededException("Event is full!");
+            }
+            registeredPairs.put(pair, "ACTIVE");
+            registrations.add(new Registration(EventManagementSystem.generateId("R"), userId, eventId,
+                    date == null || date.isEmpty() ? today : date, "ACTIVE"));
+        });
+    }
+
+    private void stream(String file, String[] columns, RowHandler handler) throws IOException {
+        boolean jsonl = file.endsWith(".jsonl");
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8), 1 << 16)) {
+            String line;
+            int lineNumber = 0;
+            boolean first = true;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.trim().isEmpty()) {
+                    continue;
+                }
+                boolean mayBeHeader = first && !jsonl;
+                first = false;
+                try {
+                    Map<String, String> row = jsonl ? Json.parseObject(line) : csvRow(line, columns);
+                    if (mayBeHeader && isHeader(row)) {
+                        continue;
+                    }
+                    handler.accept(row);
+                    accepted++;
+                } catch (Exception e) {
+                    rejected++;
+                    rejects.println(file + ":" + lineNumber + ": " + e.getMessage() + " | " + line);
+                }
+            }
+        }
+    }
+
+    private static Map<String, String> csvRow(String line, String[] columns) throws IOException {
+        RecordCodec.Reader reader = new RecordCodec.Reader(line);
+        if (!reader.next()) {
+            throw new IllegalArgumentException("Line starts with '#' (escape it as \\#)");
+        }
+        LinkedHashMap<String, String> row = new LinkedHashMap<>();
+        String field;
+        for (int i = 0; i < columns.length && (field = reader.field()) != null; i++) {
+            row.put(columns[i], field.trim());
+        }
+        return row;
+    }
+
+    // A CSV header names the columns in place of values, e.g. userId,eventId
+    private static boolean isHeader(Map<String, String> row) {
+        for (Map.Entry<String, String> field : row.entrySet()) {
+            if (!field.getKey().equalsIgnoreCase(field.getValue())) {
+                return false;
+            }
+        }
+        return !row.isEmpty();
+    }
+
+    private static String required(Map<String, String> row, String field) {
+        String value = row.get(field);
+        if (value == null || value.isEmpty()) {
+            throw new IllegalArgumentException("Missing " + field);
+        }
+        return value;
+    }
+
+    public static void main(String[] args) {
+        String usersFile = null, eventsFile = null, registrationsFile = null;
+        for (int i = 0; i < args.length; i += 2) {
+            if (i + 1 == args.length) {
+                System.out.println("Missing value for " + args[i]);
+                return;
+            }
+            switch (args[i]) {
+                case "--users": usersFile = args[i + 1]; break;
+                case "--events": eventsFile = args[i + 1]; break;
+                case "--registrations": registrationsFile = args[i + 1]; break;
+                default:
+                    System.out.println("Unknown option: " + args[i]);
+                    return;
+            }
+        }
+        if (usersFile == null && eventsFile == null && registrationsFile == null) {
+            System.out.println("Usage: java EventManagementSystem import [--users FILE] [--events FILE] [--registrations FILE]");
+            return;
+        }
+
+        ArrayList<Person> users = new ArrayList<>();
+        ArrayList<Event> events = new ArrayList<>();
+        ArrayList<Registration> registrations = new ArrayList<>();
+        StorageEngine storage;
+        try {
+            storage = StorageEngine.open();
+            storage.load(users, events, registrations);
+        } catch (IOException e) {
+            System.err.println("Error loading data: " + e.getMessage());
+            return;
+        }
+
+        long start = System.nanoTime();
+        try (PrintWriter rejects = new PrintWriter(new BufferedWriter(
+                new OutputStreamWriter(new FileOutputStream(REJECTS_FILE), StandardCharsets.UTF_8)))) {
+            BulkImporter importer = new BulkImporter(users, events, registrations, rejects);
+            // Users first so events can name organizers, events before the registrations that need them
+            if (usersFile != null) importer.importUsers(usersFile);
+            if (eventsFile != null) importer.importEvents(eventsFile);
+            if (registrationsFile != null) importer.importRegistrations(registrationsFile);
+            storage.replaceAll(users, events, registrations);
+
+            double seconds = (System.nanoTime() - start) / 1e9;
+            int rows = importer.getAccepted() + importer.getRejected();
+            System.out.println("Imported " + importer.getAccepted() + " rows, rejected " + importer.getRejected()
+                    + " (see " + REJECTS_FILE + ")");
+            System.out.printf("%d rows in %.2fs (%.0f rows/s)%n", rows, seconds, rows / Math.max(seconds, 1e-9));
+        } catch (IOException e) {
+            System.err.println("Import failed, nothing was committed: " + e.getMessage());
+        } finally {
+            storage.close();
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,694 @@
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Column-per-field registration storage: a row costs a few primitive slots instead of a
+// Registration object and five Strings. Registrations handed out are materialized copies,
+// so status changes must go through setStatus. Rows are split over shards by event, each with
+// its own columns and lock, so writers for different events rarely meet; a removed row goes on
+// its shard's free list and is reused by the next add instead of growing the columns.
+public class CompactRegistrationStore implements RegistrationStore {
+    private static final int SHARDS = 16;
+
+    private final Shard[] shards;
+
+    public CompactRegistrationStore() {
+        shards = new Shard[SHARDS];
+        for (int i = 0; i < SHARDS; i++) {
+            shards[i] = new Shard();
+        }
+    }
+
+    @Override
+    public boolean claim(String userId, String eventId) {
+        return shardFor(eventId).claim(userId, eventId);
+    }
+
+    @Override
+    public void release(String userId, String eventId) {
+        shardFor(eventId).release(userId, eventId);
+    }
+
+    @Override
+    public boolean isActive(String userId, String eventId) {
+        return shardFor(eventId).isActive(userId, eventId);
+    }
+
+    @Override
+    public void add(Registration reg) {
+        shardFor(reg.getEventId()).add(reg);
+    }
+
+    // Lookups by registration ID try each shard; the ID does not say which event it belongs to
+    @Override
+    public Registration get(String registrationId) {
+        for (Shard shard : shards) {
+            Registration reg = shard.get(registrationId);
+            if (reg != null) {
+                return reg;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public Registration remove(String registrationId) {
+        for (Shard shard : shards) {
+            Registration reg = shard.remove(registrationId);
+            if (reg != null) {
+                return reg;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public ArrayList<Registration> removeAll(String eventId, List<String> registrationIds) {
+        return shardFor(eventId).removeAll(registrationIds);
+    }
+
+    @Override
+    public void setStatus(String registrationId, String status) {
+        for (Shard shard : shards) {
+            if (shard.setStatus(registrationId, status)) {
+                return;
+            }
+        }
+    }
+
+    @Override
+    public ArrayList<Registration> removeEvent(String eventId) {
+        return shardFor(eventId).removeEvent(eventId);
+    }
+
+    @Override
+    public List<Registration> getByUser(String userId) {
+        ArrayList<Registration> result = new ArrayList<>();
+        for (Shard shard : shards) {
+            result.addAll(shard.getByUser(userId));
+        }
+        return result;
+    }
+
+    @Override
+    public List<Registration> getByEvent(String eventId) {
+        return shardFor(eventId).getByEvent(eventId);
+    }
+
+    @Override
+    public ArrayList<Registration> getAll() {
+        ArrayList<Registration> all = new ArrayList<>(size());
+        for (Shard shard : shards) {
+            all.addAll(shard.getAll());
+        }
+        return all;
+    }
+
+    @Override
+    public int size() {
+        int size = 0;
+        for (Shard shard : shards) {
+            size += shard.size();
+        }
+        return size;
+    }
+
+    private Shard shardFor(String eventId) {
+        return shards[(eventId.hashCode() & 0x7fffffff) % SHARDS];
+    }
+
+    // One event's registrations always live in the same shard, under that shard's lock
+    private static class Shard {
+        private static final int INITIAL_ROWS = 1024;
+        private static final byte REMOVED = -1;
+        private static final long NO_NUMBER = -1;
+        private static final int NO_DATE = Integer.MIN_VALUE;
+        private static final int CLAIMED = -1;
+
+        private byte[] idPrefix;
+        private long[] idNumber;
+        private int[] userRef;
+        private int[] eventRef;
+        private int[] epochDay;
+        private byte[] status;
+        private int rows;
+        private int live;
+        private IntList freeRows; // tombstoned rows, reused before the arrays grow
+
+        private StringPool prefixes;
+        private StringPool userIds;
+        private StringPool eventIds;
+        private StringPool statuses;
+        private ArrayList<IntList> rowsByUser;
+        private ArrayList<IntList> rowsByEvent;
+        private LongIntMap rowByNumber;
+        private LongIntMap activePairs;
+
+        // IDs and dates that do not fit the prefix + number / ISO date shape
+        private HashMap<String, Integer> irregularRowById;
+        private HashMap<Integer, String> irregularIds;
+        private HashMap<Integer, String> irregularDates;
+
+        private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+        Shard() {
+            idPrefix = new byte[INITIAL_ROWS];
+            idNumber = new long[INITIAL_ROWS];
+            userRef = new int[INITIAL_ROWS];
+            eventRef = new int[INITIAL_ROWS];
+            epochDay = new int[INITIAL_ROWS];
+            status = new byte[INITIAL_ROWS];
+            prefixes = new StringPool();
+            userIds = new StringPool();
+            eventIds = new StringPool();
+            statuses = new StringPool();
+            rowsByUser = new ArrayList<>();
+            rowsByEvent = new ArrayList<>();
+            rowByNumber = new LongIntMap();
+            activePairs = new LongIntMap();
+            irregularRowById = new HashMap<>();
+            irregularIds = new HashMap<>();
+            irregularDates = new HashMap<>();
+            freeRows = new IntList();
+        }
+
+        public boolean claim(String userId, String eventId) {
+            lock.writeLock().lock();
+            try {
+                return activePairs.putIfAbsent(pair(userIds.intern(userId), eventIds.intern(eventId)), CLAIMED);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        public void release(String userId, String eventId) {
+            lock.writeLock().lock();
+            try {
+                int user = userIds.find(userId);
+                int event = eventIds.find(eventId);
+                if (user >= 0 && event >= 0) {
+                    activePairs.remove(pair(user, event));
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        public boolean isActive(String userId, String eventId) {
+            lock.readLock().lock();
+            try {
+                int user = userIds.find(userId);
+                int event = eventIds.find(eventId);
+                return user >= 0 && event >= 0 && activePairs.containsKey(pair(user, event));
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        public void add(Registration reg) {
+            lock.writeLock().lock();
+            try {
+                int row;
+                if (freeRows.size > 0) {
+                    row = freeRows.data[--freeRows.size];
+                } else {
+                    if (rows == idNumber.length) {
+                        grow();
+                    }
+                    row = rows++;
+                }
+                setId(row, reg.getRegistrationId());
+                setDate(row, reg.getRegistrationDate());
+                int user = userIds.intern(reg.getUserId());
+                int event = eventIds.intern(reg.getEventId());
+                userRef[row] = user;
+                eventRef[row] = event;
+                status[row] = statusCode(reg.getStatus());
+                rowsFor(rowsByUser, user).add(row);
+                rowsFor(rowsByEvent, event).add(row);
+                if (reg.getStatus().equals("ACTIVE")) {
+                    activePairs.put(pair(user, event), row);
+                }
+                live++;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        public Registration get(String registrationId) {
+            lock.readLock().lock();
+            try {
+                int row = findRow(registrationId);
+                return row < 0 ? null : materialize(row);
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        public Registration remove(String registrationId) {
+            lock.writeLock().lock();
+            try {
+                int row = findRow(registrationId);
+                if (row < 0) {
+                    return null;
+                }
+                Registration removed = materialize(row);
+                rowsByUser.get(userRef[row]).remove(row);
+                rowsByEvent.get(eventRef[row]).remove(row);
+                tombstone(row);
+                return removed;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        // One pass over each event's rows, however many of them go
+        public ArrayList<Registration> removeAll(List<String> registrationIds) {
+            lock.writeLock().lock();
+            try {
+                ArrayList<Registration> removed = new ArrayList<>(registrationIds.size());
+                int[] gone = new int[registrationIds.size()];
+                int count = 0;
+                IntList events = new IntList();
+                for (String registrationId : registrationIds) {
+                    int row = findRow(registrationId);
+                    if (row < 0) {
+                        continue;
+                    }
+                    removed.add(materialize(row));
+                    rowsByUser.get(userRef[row]).remove(row);
+                    if (!events.contains(eventRef[row])) {
+                        events.add(eventRef[row]);
+                    }
+                    gone[count++] = row;
+                }
+                gone = Arrays.copyOf(gone, count);
+                Arrays.sort(gone);
+                for (int i = 0; i < events.size; i++) {
+                    rowsByEvent.get(events.data[i]).removeAll(gone);
+                }
+                for (int row : gone) {
+                    tombstone(row);
+                }
+                return removed;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        public boolean setStatus(String registrationId, String newStatus) {
+            lock.writeLock().lock();
+            try {
+                int row = findRow(registrationId);
+                if (row < 0) {
+                    return false;
+                }
+                long key = pair(userRef[row], eventRef[row]);
+                if (isActiveRow(row)) {
+                    activePairs.remove(key);
+                }
+                status[row] = statusCode(newStatus);
+                if (newStatus.equals("ACTIVE")) {
+                    activePairs.put(key, row);
+                }
+                return true;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        public ArrayList<Registration> removeEvent(String eventId) {
+            lock.writeLock().lock();
+            try {
+                ArrayList<Registration> removed = new ArrayList<>();
+                int event = eventIds.find(eventId);
+                if (event < 0 || rowsByEvent.size() <= event || rowsByEvent.get(event) == null) {
+                    return removed;
+                }
+                IntList eventRows = rowsByEvent.set(event, null);
+                for (int i = 0; i < eventRows.size; i++) {
+                    int row = eventRows.data[i];
+                    removed.add(materialize(row));
+                    rowsByUser.get(userRef[row]).remove(row);
+                    tombstone(row);
+                }
+                return removed;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        public List<Registration> getByUser(String userId) {
+            lock.readLock().lock();
+            try {
+                return materializeAll(rowsByUser, userIds.find(userId));
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        public List<Registration> getByEvent(String eventId) {
+            lock.readLock().lock();
+            try {
+                return materializeAll(rowsByEvent, eventIds.find(eventId));
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        public ArrayList<Registration> getAll() {
+            lock.readLock().lock();
+            try {
+                ArrayList<Registration> all = new ArrayList<>(live);
+                for (int row = 0; row < rows; row++) {
+                    if (status[row] != REMOVED) {
+                        all.add(materialize(row));
+                    }
+                }
+                return all;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        public int size() {
+            lock.readLock().lock();
+            try {
+                return live;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        private void setId(int row, String registrationId) {
+            int split = registrationId.length();
+            while (split > 0 && Character.isDigit(registrationId.charAt(split - 1))) {
+                split--;
+            }
+            long number = parseNumber(registrationId.substring(split));
+            if (number != NO_NUMBER && prefixes.size() < Byte.MAX_VALUE && !rowByNumber.containsKey(number)) {
+                idPrefix[row] = (byte) prefixes.intern(registrationId.substring(0, split));
+                idNumber[row] = number;
+                rowByNumber.put(number, row);
+            } else {
+                idNumber[row] = NO_NUMBER;
+                irregularIds.put(row, registrationId);
+                irregularRowById.put(registrationId, row);
+            }
+        }
+
+        private void setDate(int row, String date) {
+            try {
+                LocalDate parsed = LocalDate.parse(date);
+                if (parsed.toString().equals(date)) {
+                    epochDay[row] = (int) parsed.toEpochDay();
+                    return;
+                }
+            } catch (DateTimeParseException e) {
+                // fall through and keep the raw string
+            }
+            epochDay[row] = NO_DATE;
+            irregularDates.put(row, date);
+        }
+
+        private int findRow(String registrationId) {
+            Integer irregular = irregularRowById.get(registrationId);
+            if (irregular != null) {
+                return irregular;
+            }
+            int split = registrationId.length();
+            while (split > 0 && Character.isDigit(registrationId.charAt(split - 1))) {
+                split--;
+            }
+            long number = parseNumber(registrationId.substring(split));
+            if (number == NO_NUMBER) {
+                return -1;
+            }
+            int row = rowByNumber.get(number);
+            if (row < 0 || !idOf(row).equals(registrationId)) {
+                return -1;
+            }
+            return row;
+        }
+
+        // Canonical decimal only (no leading zeros), so the string can be rebuilt from the long
+        private static long parseNumber(String digits) {
+            if (digits.isEmpty() || digits.length() > 19 || (digits.length() > 1 && digits.charAt(0) == '0')) {
+                return NO_NUMBER;
+            }
+            try {
+                return Long.parseLong(digits);
+            } catch (NumberFormatException e) {
+                return NO_NUMBER;
+            }
+        }
+
+        private void tombstone(int row) {
+            if (isActiveRow(row)) {
+                activePairs.remove(pair(userRef[row], eventRef[row]));
+            }
+            if (idNumber[row] == NO_NUMBER) {
+                irregularRowById.remove(irregularIds.remove(row));
+            } else {
+                rowByNumber.remove(idNumber[row]);
+            }
+            irregularDates.remove(row);
+            status[row] = REMOVED;
+            live--;
+            freeRows.add(row);
+        }
+
+        private boolean isActiveRow(int row) {
+            return status[row] != REMOVED && statuses.get(status[row]).equals("ACTIVE");
+        }
+
+        private String idOf(int row) {
+            if (idNumber[row] == NO_NUMBER) {
+                return irregularIds.get(row);
+            }
+            return prefixes.get(idPrefix[row]) + idNumber[row];
+        }
+
+        private Registration materialize(int row) {
+            String date = epochDay[row] == NO_DATE
+                    ? irregularDates.get(row)
+                    : LocalDate.ofEpochDay(epochDay[row]).toString();
+            return new Registration(idOf(row), userIds.get(userRef[row]), eventIds.get(eventRef[row]),
+                    date, statuses.get(status[row]));
+        }
+
+        private ArrayList<Registration> materializeAll(ArrayList<IntList> index, int ref) {
+            ArrayList<Registration> result = new ArrayList<>();
+            if (ref < 0 || index.size() <= ref || index.get(ref) == null) {
+                return result;
+            }
+            IntList list = index.get(ref);
+            for (int i = 0; i < list.size; i++) {
+                result.add(materialize(list.data[i]));
+            }
+            return result;
+        }
+
+        private byte statusCode(String value) {
+            int code = statuses.intern(value);
+            if (code >= Byte.MAX_VALUE) {
+                throw new IllegalStateException("Too many distinct registration statuses");
+            }
+            return (byte) code;
+        }
+
+        private static IntList rowsFor(ArrayList<IntList> index, int ref) {
+            while (index.size() <= ref) {
+                index.add(null);
+            }
+            IntList list = index.get(ref);
+            if (list == null) {
+                list = new IntList();
+                index.set(ref, list);
+            }
+            return list;
+        }
+
+        private static long pair(int user, int event) {
+            return ((long) user << 32) | (event & 0xffffffffL);
+        }
+
+        private void grow() {
+            int capacity = idNumber.length + (idNumber.length >> 1);
+            idPrefix = Arrays.copyOf(idPrefix, capacity);
+            idNumber = Arrays.copyOf(idNumber, capacity);
+            userRef = Arrays.copyOf(userRef, capacity);
+            eventRef = Arrays.copyOf(eventRef, capacity);
+            epochDay = Arrays.copyOf(epochDay, capacity);
+            status = Arrays.copyOf(status, capacity);
+        }
+    }
+
+    private static class StringPool {
+        private HashMap<String, Integer> refs = new HashMap<>();
+        private ArrayList<String> values = new ArrayList<>();
+
+        int intern(String value) {
+            Integer ref = refs.get(value);
+            if (ref == null) {
+                ref = values.size();
+                refs.put(value, ref);
+                values.add(value);
+            }
+            return ref;
+        }
+
+        int find(String value) {
+            Integer ref = refs.get(value);
+            return ref == null ? -1 : ref;
+        }
+
+        String get(int ref) {
+            return values.get(ref);
+        }
+
+        int size() {
+            return values.size();
+        }
+    }
+
+    private static class IntList {
+        private int[] data = new int[4];
+        private int size;
+
+        void add(int value) {
+            if (size == data.length) {
+                data = Arrays.copyOf(data, size * 2);
+            }
+            data[size++] = value;
+        }
+
+        void remove(int value) {
+            for (int i = 0; i < size; i++) {
+                if (data[i] == value) {
+                    System.arraycopy(data, i + 1, data, i, size - i - 1);
+                    size--;
+                    return;
+                }
+            }
+        }
+
+        boolean contains(int value) {
+            for (int i = 0; i < size; i++) {
+                if (data[i] == value) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        // sorted holds the values to drop, in ascending order
+        void removeAll(int[] sorted) {
+            int kept = 0;
+            for (int i = 0; i < size; i++) {
+                if (Arrays.binarySearch(sorted, data[i]) < 0) {
+                    data[kept++] = data[i];
+                }
+            }
+            size = kept;
+        }
+    }
+
+    // Open-addressing long -> int map; get returns -1 for a missing key
+    private static class LongIntMap {
+        private static final byte FREE = 0, USED = 1, DELETED = 2;
+
+        private long[] keys = new long[16];
+        private int[] values = new int[16];
+        private byte[] states = new byte[16];
+        private int used;
+        private int occupied;
+
+        int get(long key) {
+            int slot = find(key);
+            return slot < 0 ? -1 : values[slot];
+        }
+
+        boolean containsKey(long key) {
+            return find(key) >= 0;
+        }
+
+        void put(long key, int value) {
+            int slot = find(key);
+            if (slot >= 0) {
+                values[slot] = value;
+                return;
+            }
+            insert(key, value);
+        }
+
+        boolean putIfAbsent(long key, int value) {
+            if (find(key) >= 0) {
+                return false;
+            }
+            insert(key, value);
+            return true;
+        }
+
+        void remove(long key) {
+            int slot = find(key);
+            if (slot >= 0) {
+                states[slot] = DELETED;
+                used--;
+            }
+        }
+
+        private int find(long key) {
+            int mask = keys.length - 1;
+            for (int slot = hash(key) & mask; states[slot] != FREE; slot = (slot + 1) & mask) {
+                if (states[slot] == USED && keys[slot] == key) {
+                    return slot;
+                }
+            }
+            return -1;
+        }
+
+        private void insert(long key, int value) {
+            if ((occupied + 1) * 4 >= keys.length * 3) {
+                rehash(used * 2 >= keys.length / 2 ? keys.length * 2 : keys.length);
+            }
+            int mask = keys.length - 1;
+            int slot = hash(key) & mask;
+            while (states[slot] == USED) {
+                slot = (slot + 1) & mask;
+            }
+            if (states[slot] == FREE) {
+                occupied++;
+            }
+            keys[slot] = key;
+            values[slot] = value;
+            states[slot] = USED;
+            used++;
+        }
+
+        private void rehash(int capacity) {
+            long[] oldKeys = keys;
+            int[] oldValues = values;
+            byte[] oldStates = states;
+            keys = new long[capacity];
+            values = new int[capacity];
+            states = new byte[capacity];
+            used = 0;
+            occupied = 0;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldStates[i] == USED) {
+                    insert(oldKeys[i], oldValues[i]);
+                }
+            }
+        }
+
+        private static int hash(long key) {
+            long h = key * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32));
+        }
+    }
+}
\ No newline at end of file
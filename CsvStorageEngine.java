@@ -0,0 +1,83 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+// The text files plus journal handled by FileHandler. Whole-file by nature: loads and writes
+// are cheap, but a keyed read or scan re-reads every file, so lookups belong to the in-memory
+// indexes (or to the lsm engine once the data no longer fits in memory).
+public class CsvStorageEngine implements StorageEngine {
+
+    public void load(ArrayList<Person> users, ArrayList<Event> events, ArrayList<Registration> registrations)
+            throws IOException {
+        FileHandler.loadDatabase(users, events, registrations);
+    }
+
+    public Person getUser(String userId) throws IOException {
+        return first(scanUsers(userId, userId + '\0', 1));
+    }
+
+    public Event getEvent(String eventId) throws IOException {
+        return first(scanEvents(eventId, eventId + '\0', 1));
+    }
+
+    public Registration getRegistration(String registrationId) throws IOException {
+        return first(scanRegistrations(registrationId, registrationId + '\0', 1));
+    }
+
+    public List<Person> scanUsers(String fromKey, String toKey, int limit) throws IOException {
+        ArrayList<Person> users = new ArrayList<>();
+        FileHandler.readState(users, new ArrayList<>(), new ArrayList<>());
+        return range(users, Person::getId, fromKey, toKey, limit);
+    }
+
+    public List<Event> scanEvents(String fromKey, String toKey, int limit) throws IOException {
+        ArrayList<Event> events = new ArrayList<>();
+        FileHandler.readState(new ArrayList<>(), events, new ArrayList<>());
+        return range(events, Event::getEventId, fromKey, toKey, limit);
+    }
+
+    public List<Registration> scanRegistrations(String fromKey, String toKey, int limit) throws IOException {
+        ArrayList<Registration> registrations = new ArrayList<>();
+        FileHandler.readState(new ArrayList<>(), new ArrayList<>(), registrations);
+        return range(registrations, Registration::getRegistrationId, fromKey, toKey, limit);
+    }
+
+    public long append(WriteBatch batch) {
+        return FileHandler.appendJournal(batch);
+    }
+
+    public void await(long ticket) throws IOException {
+        FileHandler.awaitJournal(ticket);
+    }
+
+    public void replaceAll(ArrayList<Person> users, ArrayList<Event> events, ArrayList<Registration> registrations)
+            throws IOException {
+        FileHandler.checkpoint(users, events, registrations);
+    }
+
+    public void flush() {
+        FileHandler.flushJournal();
+    }
+
+    public void close() {
+        FileHandler.closeJournal();
+    }
+
+    private static <T> List<T> range(ArrayList<T> all, Function<T, String> key, String fromKey, String toKey,
+                                     int limit) {
+        ArrayList<T> result = new ArrayList<>();
+        for (T item : all) {
+            String k = key.apply(item);
+            if ((fromKey == null || k.compareTo(fromKey) >= 0) && (toKey == null || k.compareTo(toKey) < 0)) {
+                result.add(item);
+            }
+        }
+        result.sort((a, b) -> key.apply(a).compareTo(key.apply(b)));
+        return result.size() > limit ? new ArrayList<>(result.subList(0, limit)) : result;
+    }
+
+    private static <T> T first(List<T> items) {
+        return items.isEmpty() ? null : items.get(0);
+    }
+}
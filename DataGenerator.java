@@ -0,0 +1,327 @@
+import exceptions.DuplicateRegistrationException;
+import exceptions.EventCapacityExceededException;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Synthetic data for capacity planning, plus an optional concurrent registration workload
+// replayed against the loaded system. Data replaces everything in the storage engine chosen with
+// -Dems.storage (for csv, the text files or snapshot.bin with -Dems.binarySnapshot).
+//
+// java EventManagementSystem generate [--users N] [--events N] [--registrations N]
+//     [--roles admin,organizer,attendee] [--types conference,workshop,concert]
+//     [--zipf S] [--sold-out FRACTION] [--cancelled FRACTION] [--seed N]
+//     [--replay-threads N] [--replay-ops N] [--mix register,cancel,lookup,search]
+//
+// Event popularity is Zipfian with exponent S (0 = uniform); --sold-out is the fraction of
+// events whose capacity is exactly their registrations. Role, type and mix weights are ratios.
+public class DataGenerator {
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("dd-MM-yyyy");
+    private static final String[] OPS = {"register", "cancel", "lookup", "search"};
+
+    private int userCount = 10000;
+    private int eventCount = 1000;
+    private int registrationCount = 100000;
+    private double[] roleWeights = {1, 9, 90};
+    private double[] typeWeights = {40, 40, 20};
+    private double zipf = 1.0;
+    private double soldOut = 0.05;
+    private double cancelled = 0.05;
+    private long seed = 1;
+    private int replayThreads = 0;
+    private int replayOps = 100000;
+    private double[] mix = {70, 10, 15, 5};
+    private StorageEngine storage;
+
+    public static void main(String[] args) {
+        DataGenerator generator = new DataGenerator();
+        try {
+            for (int i = 0; i < args.length; i += 2) {
+                if (i + 1 == args.length) {
+                    throw new IllegalArgumentException("Missing value for " + args[i]);
+                }
+                String value = args[i + 1];
+                switch (args[i]) {
+                    case "--users": generator.userCount = Integer.parseInt(value); break;
+                    case "--events": generator.eventCount = Integer.parseInt(value); break;
+                    case "--registrations": generator.registrationCount = Integer.parseInt(value); break;
+                    case "--roles": generator.roleWeights = weights(value, 3); break;
+                    case "--types": generator.typeWeights = weights(value, 3); break;
+                    case "--zipf": generator.zipf = Double.parseDouble(value); break;
+                    case "--sold-out": generator.soldOut = Double.parseDouble(value); break;
+                    case "--cancelled": generator.cancelled = Double.parseDouble(value); break;
+                    case "--seed": generator.seed = Long.parseLong(value); break;
+                    case "--replay-threads": generator.replayThreads = Integer.parseInt(value); break;
+                    case "--replay-ops": generator.replayOps = Integer.parseInt(value); break;
+                    case "--mix": generator.mix = weights(value, 4); break;
+                    default: throw new IllegalArgumentException("Unknown option " + args[i]);
+                }
+            }
+        } catch (RuntimeException e) {
+            System.out.println("Invalid arguments: " + e.getMessage());
+            System.out.println("Usage: java EventManagementSystem generate [--users N] [--events N] [--registrations N]"
+                    + " [--roles a,o,t] [--types c,w,m] [--zipf S] [--sold-out F] [--cancelled F] [--seed N]"
+                    + " [--replay-threads N] [--replay-ops N] [--mix reg,cancel,lookup,search]");
+            return;
+        }
+
+        try {
+            generator.storage = StorageEngine.open();
+            generator.generate();
+            if (generator.replayThreads > 0) {
+                generator.replay();
+            }
+        } catch (IOException | InterruptedException | IllegalArgumentException e) {
+            System.err.println("Generation failed: " + e.getMessage());
+        } finally {
+            if (generator.storage != null) {
+                generator.storage.close();
+            }
+        }
+    }
+
+    public void generate() throws IOException {
+        Random random = new Random(seed);
+        long start = System.nanoTime();
+
+        ArrayList<Person> users = new ArrayList<>(userCount);
+        ArrayList<String> attendees = new ArrayList<>();
+        ArrayList<String> organizers = new ArrayList<>();
+        for (int i = 0; i < userCount; i++) {
+            String id = "U" + i;
+            String name = "User " + i;
+            String email = "user" + i + "@example.com";
+            String phone = String.format("555-%07d", i);
+            switch (pick(roleWeights, random)) {
+                case 0:
+                    users.add(new Admin(id, name, email, phone));
+                    break;
+                case 1:
+                    users.add(new Organizer(id, name, email, phone));
+                    organizers.add(id);
+                    break;
+                default:
+                    users.add(new Attendee(id, name, email, phone));
+                    attendees.add(id);
+            }
+        }
+        if (attendees.isEmpty() && registrationCount > 0) {
+            throw new IllegalArgumentException("Registrations need at least one attendee; check --roles");
+        }
+        if (organizers.isEmpty() && eventCount > 0) {
+            throw new IllegalArgumentException("Events need at least one organizer; check --roles");
+        }
+
+        // Registrations first, so capacities can be fitted to them afterwards
+        double[] popularity = zipfCdf(eventCount, zipf);
+        int[] active = new int[eventCount];
+        int maxPerEvent = attendees.size();
+        HashSet<Long> pairs = new HashSet<>();
+        ArrayList<Registration> registrations = new ArrayList<>(registrationCount);
+        LocalDate today = LocalDate.now();
+        int attempts = 0;
+        while (registrations.size() < registrationCount && attempts++ < registrationCount * 20L) {
+            int event = sample(popularity, random);
+            int attendee = random.nextInt(attendees.size());
+            if (active[event] >= maxPerEvent || !pairs.add((long) event * maxPerEvent + attendee)) {
+                continue;
+            }
+            String status = random.nextDouble() < cancelled ? "CANCELLED" : "ACTIVE";
+            if (status.equals("ACTIVE")) {
+                active[event]++;
+            }
+            registrations.add(new Registration("R" + registrations.size(), attendees.get(attendee), "E" + event,
+                    today.minusDays(random.nextInt(365)).toString(), status));
+        }
+
+        ArrayList<Event> events = new ArrayList<>(eventCount);
+        int soldOutEvents = 0;
+        for (int i = 0; i < eventCount; i++) {
+            boolean full = random.nextDouble() < soldOut;
+            int capacity = full ? Math.max(active[i], 1) : active[i] + 10 + random.nextInt(Math.max(10, active[i] + 1));
+            if (full && active[i] > 0) {
+                soldOutEvents++;
+            }
+            String id = "E" + i;
+            String date = today.plusDays(random.nextInt(365)).format(DATE_FORMAT);
+            String organizer = organizers.get(random.nextInt(organizers.size()));
+            String venue = "Venue " + random.nextInt(Math.max(1, eventCount / 10));
+            Event event;
+            switch (pick(typeWeights, random)) {
+                case 0:
+                    event = new Conference(id, "Conference " + i, "Generated conference", date, venue, capacity,
+                            organizer, 1 + random.nextInt(10));
+                    break;
+                case 1:
+                    event = new Workshop(id, "Workshop " + i, "Generated workshop", date, venue, capacity,
+                            organizer, 1 + random.nextInt(8));
+                    break;
+                default:
+                    event = new Concert(id, "Concert " + i, "Generated concert", date, venue, capacity,
+                            organizer, "Artist " + random.nextInt(500));
+            }
+            event.setRegisteredCount(active[i]);
+            events.add(event);
+        }
+
+        storage.replaceAll(users, events, registrations);
+        System.out.printf("Wrote %d users (%d organizers, %d attendees), %d events (%d sold out), %d registrations in %.1f s%n",
+                users.size(), organizers.size(), attendees.size(), events.size(), soldOutEvents,
+                registrations.size(), (System.nanoTime() - start) / 1e9);
+        if (registrations.size() < registrationCount) {
+            System.out.println("Only " + registrations.size() + " unique (attendee, event) pairs fit; add attendees or events");
+        }
+    }
+
+    // Loads what generate() wrote and drives it from replayThreads threads at once
+    public void replay() throws InterruptedException {
+        EventManagementSystem system = new EventManagementSystem(storage);
+        RegistrationService service = system.getRegistrationService();
+        ArrayList<String> attendees = new ArrayList<>();
+        for (Person user : system.getUsers()) {
+            if (user.getRole().equals("ATTENDEE")) {
+                attendees.add(user.getId());
+            }
+        }
+        ArrayList<Event> events = new ArrayList<>(system.getEvents());
+        events.sort((a, b) -> Integer.compare(Integer.parseInt(a.getEventId().substring(1)),
+                Integer.parseInt(b.getEventId().substring(1))));
+        if (attendees.isEmpty() || events.isEmpty()) {
+            System.out.println("Nothing to replay against.");
+            return;
+        }
+        double[] popularity = zipfCdf(events.size(), zipf);
+
+        LatencyHistogram[] latency = new LatencyHistogram[OPS.length];
+        for (int i = 0; i < OPS.length; i++) {
+            latency[i] = new LatencyHistogram();
+        }
+        AtomicLong rejected = new AtomicLong();
+        AtomicLong errors = new AtomicLong();
+        AtomicLong remaining = new AtomicLong(replayOps);
+        ConcurrentLinkedQueue<Registration> cancellable = new ConcurrentLinkedQueue<>();
+        CountDownLatch ready = new CountDownLatch(replayThreads);
+        CountDownLatch go = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(replayThreads);
+
+        for (int t = 0; t < replayThreads; t++) {
+            Thread worker = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                ready.countDown();
+                try {
+                    go.await();
+                    while (remaining.getAndDecrement() > 0) {
+                        int op = pick(mix, random);
+                        String userId = attendees.get(random.nextInt(attendees.size()));
+                        Event event = events.get(sample(popularity, random));
+                        long start = System.nanoTime();
+                        try {
+                            switch (op) {
+                                case 0:
+                                    cancellable.add(service.register(userId, event.getEventId()));
+                                    break;
+                                case 1: {
+                                    Registration reg = cancellable.poll();
+                                    if (reg != null) {
+                                        service.cancel(reg.getUserId(), reg.getRegistrationId());
+                                    }
+                                    break;
+                                }
+                                case 2:
+                                    service.isRegistered(userId, event.getEventId());
+                                    break;
+                                default:
+                                    system.searchEventsByDate(event.getDate());
+                            }
+                        } catch (DuplicateRegistrationException | EventCapacityExceededException e) {
+                            rejected.incrementAndGet();
+                        } catch (Exception e) {
+                            errors.incrementAndGet();
+                        }
+                        latency[op].record(System.nanoTime() - start);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            }, "replay-" + t);
+            worker.start();
+        }
+
+        ready.await();
+        long start = System.nanoTime();
+        go.countDown();
+        done.await();
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        System.out.printf("%nReplayed %d ops on %d threads in %.2f s: %.0f ops/s, %d rejected (full or duplicate),"
+                + " %d errors%n", replayOps, replayThreads, seconds, replayOps / seconds, rejected.get(), errors.get());
+        System.out.printf("%-10s %10s %10s %10s %10s %10s %10s%n", "op", "count", "p50 us", "p90 us", "p99 us",
+                "p99.9 us", "max us");
+        for (int i = 0; i < OPS.length; i++) {
+            LatencyHistogram h = latency[i];
+            if (h.getCount() == 0) {
+                continue;
+            }
+            System.out.printf("%-10s %10d %10.1f %10.1f %10.1f %10.1f %10.1f%n", OPS[i], h.getCount(),
+                    h.percentile(0.50) / 1e3, h.percentile(0.90) / 1e3, h.percentile(0.99) / 1e3,
+                    h.percentile(0.999) / 1e3, h.getMax() / 1e3);
+        }
+    }
+
+    // Cumulative distribution with P(rank k) proportional to 1 / k^s
+    private static double[] zipfCdf(int n, double s) {
+        double[] cdf = new double[n];
+        double total = 0;
+        for (int k = 0; k < n; k++) {
+            total += 1.0 / Math.pow(k + 1, s);
+            cdf[k] = total;
+        }
+        for (int k = 0; k < n; k++) {
+            cdf[k] /= total;
+        }
+        return cdf;
+    }
+
+    private static int sample(double[] cdf, Random random) {
+        int index = Arrays.binarySearch(cdf, random.nextDouble());
+        index = index >= 0 ? index : -index - 1;
+        return Math.min(index, cdf.length - 1);
+    }
+
+    private static int pick(double[] weights, Random random) {
+        double total = 0;
+        for (double w : weights) {
+            total += w;
+        }
+        double r = random.nextDouble() * total;
+        for (int i = 0; i < weights.length; i++) {
+            r -= weights[i];
+            if (r < 0) {
+                return i;
+            }
+        }
+        return weights.length - 1;
+    }
+
+    private static double[] weights(String list, int expected) {
+        String[] parts = list.split(",");
+        if (parts.length != expected) {
+            throw new IllegalArgumentException("expected " + expected + " comma-separated weights, got " + list);
+        }
+        double[] result = new double[expected];
+        for (int i = 0; i < expected; i++) {
+            result[i] = Double.parseDouble(parts[i].trim());
+        }
+        return result;
+    }
+}
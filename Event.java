@@ -1,12 +1,17 @@
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
 public abstract class Event {
     private String eventId;
     private String title;
     private String description;
     private String date;
     private String venue;
-    private int capacity;
-    private int registeredCount;
+    private volatile int capacity;
+    private final AtomicInteger registeredCount;
     private String organizerId;
+    // Bumped after every change to a field above, so a cached rendering can tell it is stale
+    private final AtomicLong version = new AtomicLong();
 
     public Event(String eventId, String title, String description, String date,
                  String venue, int capacity, String organizerId) {
@@ -16,7 +21,7 @@ public abstract class Event {
         this.date = date;
         this.venue = venue;
         this.capacity = capacity;
-        this.registeredCount = 0;
+        this.registeredCount = new AtomicInteger();
         this.organizerId = organizerId;
     }
 
@@ -30,26 +35,58 @@ public abstract class Event {
     public String getDate() { return date; }
     public String getVenue() { return venue; }
     public int getCapacity() { return capacity; }
-    public int getRegisteredCount() { return registeredCount; }
+    public int getRegisteredCount() { return registeredCount.get(); }
     public String getOrganizerId() { return organizerId; }
+    public long getVersion() { return version.get(); }
 
-    public void setTitle(String title) { this.title = title; }
-    public void setDescription(String description) { this.description = description; }
-    public void setDate(String date) { this.date = date; }
-    public void setVenue(String venue) { this.venue = venue; }
-    public void setCapacity(int capacity) { this.capacity = capacity; }
+    public void setTitle(String title) { this.title = title; changed(); }
+    public void setDescription(String description) { this.description = description; changed(); }
+    public void setDate(String date) { this.date = date; changed(); }
+    public void setVenue(String venue) { this.venue = venue; changed(); }
+    public void setCapacity(int capacity) { this.capacity = capacity; changed(); }
+    public void setRegisteredCount(int count) { registeredCount.set(count); changed(); }
 
     public boolean incrementRegistration() {
-        if (registeredCount < capacity) {
-            registeredCount++;
-            return true;
+        while (true) {
+            int current = registeredCount.get();
+            if (current >= capacity) {
+                return false;
+            }
+            if (registeredCount.compareAndSet(current, current + 1)) {
+                changed();
+                return true;
+            }
+        }
+    }
+
+    // All-or-nothing: takes count seats only if that many are still free
+    public boolean reserveSeats(int count) {
+        while (true) {
+            int current = registeredCount.get();
+            if (current + count > capacity) {
+                return false;
+            }
+            if (registeredCount.compareAndSet(current, current + count)) {
+                changed();
+                return true;
+            }
         }
-        return false;
     }
 
     public void decrementRegistration() {
-        if (registeredCount > 0) {
-            registeredCount--;
+        while (true) {
+            int current = registeredCount.get();
+            if (current <= 0) {
+                return;
+            }
+            if (registeredCount.compareAndSet(current, current - 1)) {
+                changed();
+                return;
+            }
         }
     }
+
+    private void changed() {
+        version.incrementAndGet();
+    }
 }
\ No newline at end of file
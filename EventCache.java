@@ -0,0 +1,189 @@
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+// Bounded read-side cache for the event catalog, which is read far more often than written.
+// Two kinds of entry share one LRU budget:
+//   summaries  an event rendered for one view (console text, API JSON), stamped with
+//              Event.getVersion() at render time and re-rendered once the version moves on,
+//              so an update or a seat change invalidates that event's renderings and nothing else
+//   queries    the events on a date; membership only changes when an event is created,
+//              deleted or moved to another date, which the owner reports
+//              through eventAdded/eventRemoved/eventMoved
+// Entries are spread over segments, each an access-ordered LinkedHashMap under its own lock.
+// Size in entries: -Dems.eventCacheSize=N (default 20000, 0 disables caching)
+public class EventCache {
+    private static final int SEGMENTS = 16;
+    // Counts are cache misses; hits only cost a map lookup and a version check
+    private static final Instrumentation.Operation RENDER = Instrumentation.operation("eventCache.render");
+    private static final Instrumentation.Operation QUERY = Instrumentation.operation("eventCache.query");
+
+    private static class Summary {
+        final long version;
+        final Object value;
+
+        Summary(long version, Object value) {
+            this.version = version;
+            this.value = value;
+        }
+    }
+
+    private static class Segment extends LinkedHashMap<String, Object> {
+        private final int capacity;
+
+        Segment(int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Object> eldest) {
+            return size() > capacity;
+        }
+    }
+
+    private final Segment[] segments;
+    private final boolean enabled;
+    private final Set<String> views = ConcurrentHashMap.newKeySet();
+    // Bumped by every query invalidation; a result computed across a bump is not cached
+    private final AtomicLong epoch = new AtomicLong();
+
+    public EventCache() {
+        this(Integer.getInteger("ems.eventCacheSize", 20000));
+    }
+
+    public EventCache(int maxEntries) {
+        enabled = maxEntries > 0;
+        segments = new Segment[SEGMENTS];
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment(Math.max(1, maxEntries / SEGMENTS));
+        }
+    }
+
+    public static String byDate(LocalDate date) { return "date:" + date; }
+
+    // The event rendered for the given view, rendering it only if it changed since last time
+    @SuppressWarnings("unchecked")
+    public <V> V summary(Event event, String view, Function<Event, V> render) {
+        String key = summaryKey(view, event.getEventId());
+        Segment segment = segmentFor(key);
+        // Read before rendering: a change made mid-render leaves the entry already stale
+        long version = event.getVersion();
+        if (enabled) {
+            synchronized (segment) {
+                Summary cached = (Summary) segment.get(key);
+                if (cached != null && cached.version == version) {
+                    return (V) cached.value;
+                }
+            }
+        }
+        long start = System.nanoTime();
+        V value;
+        try {
+            value = render.apply(event);
+        } finally {
+            RENDER.record(start);
+        }
+        if (enabled) {
+            views.add(view);
+            synchronized (segment) {
+                segment.put(key, new Summary(version, value));
+            }
+        }
+        return value;
+    }
+
+    // The cached result of a query key, computing and caching it on a miss
+    @SuppressWarnings("unchecked")
+    public List<Event> query(String key, Supplier<List<Event>> compute) {
+        Segment segment = segmentFor(key);
+        long before = epoch.get();
+        if (enabled) {
+            synchronized (segment) {
+                Object cached = segment.get(key);
+                if (cached != null) {
+                    return (List<Event>) cached;
+                }
+            }
+        }
+        long start = System.nanoTime();
+        List<Event> result;
+        try {
+            result = Collections.unmodifiableList(compute.get());
+        } finally {
+            QUERY.record(start);
+        }
+        if (enabled) {
+            synchronized (segment) {
+                if (epoch.get() == before) {
+                    segment.put(key, result);
+                }
+            }
+        }
+        return result;
+    }
+
+    // Call after the event is in every index the queries read
+    public void eventAdded(Event event) {
+        invalidateDate(EventDateIndex.parseDate(event.getDate()));
+    }
+
+    // Call after the event is out of every index, with the date it was filed under; its
+    // summaries go too
+    public void eventRemoved(Event event, LocalDate date) {
+        invalidateDate(date);
+        for (String view : views) {
+            String key = summaryKey(view, event.getEventId());
+            Segment segment = segmentFor(key);
+            synchronized (segment) {
+                segment.remove(key);
+            }
+        }
+    }
+
+    // Call after the date index has re-filed an event; either date may be null (unparseable)
+    public void eventMoved(LocalDate from, LocalDate to) {
+        invalidateDate(from);
+        invalidateDate(to);
+    }
+
+    public void invalidate(String key) {
+        Segment segment = segmentFor(key);
+        synchronized (segment) {
+            segment.remove(key);
+            epoch.incrementAndGet();
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    private void invalidateDate(LocalDate date) {
+        if (date != null) {
+            invalidate(byDate(date));
+        }
+    }
+
+    // '#' keeps summary keys apart from the "kind:" query keys
+    private static String summaryKey(String view, String eventId) {
+        return view + '#' + eventId;
+    }
+
+    private Segment segmentFor(String key) {
+        return segments[(key.hashCode() & 0x7fffffff) % SEGMENTS];
+    }
+}
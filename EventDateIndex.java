@@ -0,0 +1,100 @@
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.format.ResolverStyle;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.TreeMap;
+
+public class EventDateIndex {
+    private static final DateTimeFormatter DATE_FORMAT =
+            DateTimeFormatter.ofPattern("dd-MM-uuuu").withResolverStyle(ResolverStyle.STRICT);
+
+    private TreeMap<LocalDate, ArrayList<Event>> byDate;
+    private HashMap<String, LocalDate> indexedDates; // eventId -> bucket the event currently sits in
+
+    public EventDateIndex() {
+        byDate = new TreeMap<>();
+        indexedDates = new HashMap<>();
+    }
+
+    public EventDateIndex(List<Event> events) {
+        this();
+        for (Event event : events) {
+            add(event);
+        }
+    }
+
+    public static LocalDate parseDate(String date) {
+        if (date == null) {
+            return null;
+        }
+        try {
+            return LocalDate.parse(date, DATE_FORMAT);
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    public synchronized void add(Event event) {
+        LocalDate date = parseDate(event.getDate());
+        if (date == null) {
+            return;
+        }
+        byDate.computeIfAbsent(date, k -> new ArrayList<>()).add(event);
+        indexedDates.put(event.getEventId(), date);
+    }
+
+    public synchronized void remove(Event event) {
+        LocalDate date = indexedDates.remove(event.getEventId());
+        if (date == null) {
+            return;
+        }
+        ArrayList<Event> bucket = byDate.get(date);
+        if (bucket != null) {
+            bucket.remove(event);
+            if (bucket.isEmpty()) {
+                byDate.remove(date);
+            }
+        }
+    }
+
+    // Re-buckets the event if its date was changed with Event.setDate; returns true if it moved
+    public synchronized boolean update(Event event) {
+        LocalDate current = parseDate(event.getDate());
+        LocalDate indexed = indexedDates.get(event.getEventId());
+        if (current == null ? indexed != null : !current.equals(indexed)) {
+            remove(event);
+            add(event);
+            return true;
+        }
+        return false;
+    }
+
+    // The date bucket the event is filed under, or null
+    public synchronized LocalDate indexedDate(String eventId) {
+        return indexedDates.get(eventId);
+    }
+
+    public synchronized List<Event> findByDate(LocalDate date) {
+        ArrayList<Event> bucket = byDate.get(date);
+        return bucket == null ? new ArrayList<>() : new ArrayList<>(bucket);
+    }
+
+    // Inclusive on both ends, in chronological order
+    public synchronized List<Event> findBetween(LocalDate from, LocalDate to) {
+        ArrayList<Event> result = new ArrayList<>();
+        if (from.isAfter(to)) {
+            return result;
+        }
+        for (ArrayList<Event> bucket : byDate.subMap(from, true, to, true).values()) {
+            result.addAll(bucket);
+        }
+        return result;
+    }
+
+    public synchronized int size() {
+        return indexedDates.size();
+    }
+}
\ No newline at end of file
@@ -0,0 +1,189 @@
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+// Keyset-paginated event listing. Every sort key keeps one skip list per event type plus one
+// for all types, keyed by (sort value, eventId), so a page is a tailMap walk of pageSize
+// entries whatever the catalog size. The cursor is the last key of the previous page.
+// Remaining capacity moves on every registration, so RegistrationService calls reposition()
+// while it holds the event's stripe. There is no listing-wide lock: an event's moves within one
+// sort are serialized by its entry in currentKeys (ConcurrentHashMap.compute), and a move is a
+// remove then a re-add, so a concurrent page may briefly miss the event but never lists it twice.
+public class EventListing {
+    public static final String SORT_DATE = "date";
+    public static final String SORT_REMAINING = "remaining";
+    public static final String SORT_COST = "cost";
+    public static final String ALL_TYPES = "*";
+
+    private static final String[] SORT_KEYS = {SORT_DATE, SORT_REMAINING, SORT_COST};
+
+    // sort key -> type (or ALL_TYPES) -> ordered events
+    private final HashMap<String, ConcurrentHashMap<String, ConcurrentSkipListMap<Key, Event>>> indexes;
+    // sort key -> eventId -> key the event is currently filed under
+    private final HashMap<String, ConcurrentHashMap<String, Key>> currentKeys;
+
+    private static final class Key implements Comparable<Key> {
+        final double value;
+        final String eventId;
+
+        Key(double value, String eventId) {
+            this.value = value;
+            this.eventId = eventId;
+        }
+
+        public int compareTo(Key other) {
+            int cmp = Double.compare(value, other.value);
+            return cmp != 0 ? cmp : eventId.compareTo(other.eventId);
+        }
+
+        public boolean equals(Object o) {
+            return o instanceof Key && compareTo((Key) o) == 0;
+        }
+
+        public int hashCode() {
+            return Double.hashCode(value) * 31 + eventId.hashCode();
+        }
+    }
+
+    public static class Page {
+        private final List<Event> events;
+        private final String nextCursor;
+
+        Page(List<Event> events, String nextCursor) {
+            this.events = events;
+            this.nextCursor = nextCursor;
+        }
+
+        public List<Event> getEvents() { return events; }
+        // null once the listing is exhausted
+        public String getNextCursor() { return nextCursor; }
+    }
+
+    public EventListing() {
+        indexes = new HashMap<>();
+        currentKeys = new HashMap<>();
+        for (String sort : SORT_KEYS) {
+            indexes.put(sort, new ConcurrentHashMap<>());
+            currentKeys.put(sort, new ConcurrentHashMap<>());
+        }
+    }
+
+    public EventListing(List<Event> events) {
+        this();
+        for (Event event : events) {
+            add(event);
+        }
+    }
+
+    public void add(Event event) {
+        for (String sort : SORT_KEYS) {
+            currentKeys.get(sort).compute(event.getEventId(), (id, current) -> {
+                if (current != null) {
+                    unfile(sort, event, current);
+                }
+                return file(sort, event);
+            });
+        }
+    }
+
+    public void remove(Event event) {
+        for (String sort : SORT_KEYS) {
+            currentKeys.get(sort).computeIfPresent(event.getEventId(), (id, current) -> {
+                unfile(sort, event, current);
+                return null;
+            });
+        }
+    }
+
+    // Re-files an event after its date, capacity or registered count changed; an event deleted
+    // while the caller held it stays deleted
+    public void reposition(Event event) {
+        for (String sort : SORT_KEYS) {
+            currentKeys.get(sort).computeIfPresent(event.getEventId(), (id, current) -> {
+                if (current.value == sortValue(sort, event)) {
+                    return current;
+                }
+                unfile(sort, event, current);
+                return file(sort, event);
+            });
+        }
+    }
+
+    public Page page(String sort, String type, boolean descending, String cursor, int pageSize) {
+        if (!indexes.containsKey(sort)) {
+            throw new IllegalArgumentException("Unknown sort key: " + sort);
+        }
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("Page size must be positive");
+        }
+        ConcurrentSkipListMap<Key, Event> index = indexes.get(sort).get(type == null ? ALL_TYPES : type);
+        if (index == null) {
+            return new Page(new ArrayList<>(), null);
+        }
+
+        NavigableMap<Key, Event> view = descending ? index.descendingMap() : index;
+        if (cursor != null && !cursor.isEmpty()) {
+            view = view.tailMap(decodeCursor(cursor), false);
+        }
+        ArrayList<Event> events = new ArrayList<>(pageSize);
+        Key last = null;
+        for (Map.Entry<Key, Event> entry : view.entrySet()) {
+            if (events.size() == pageSize) {
+                return new Page(events, encodeCursor(last));
+            }
+            events.add(entry.getValue());
+            last = entry.getKey();
+        }
+        return new Page(events, null);
+    }
+
+    // file and unfile run inside the event's currentKeys entry, which records the returned key
+    private Key file(String sort, Event event) {
+        Key key = new Key(sortValue(sort, event), event.getEventId());
+        ConcurrentHashMap<String, ConcurrentSkipListMap<Key, Event>> byType = indexes.get(sort);
+        byType.computeIfAbsent(ALL_TYPES, k -> new ConcurrentSkipListMap<>()).put(key, event);
+        byType.computeIfAbsent(event.getEventType(), k -> new ConcurrentSkipListMap<>()).put(key, event);
+        return key;
+    }
+
+    private void unfile(String sort, Event event, Key key) {
+        ConcurrentHashMap<String, ConcurrentSkipListMap<Key, Event>> byType = indexes.get(sort);
+        byType.get(ALL_TYPES).remove(key);
+        ConcurrentSkipListMap<Key, Event> typed = byType.get(event.getEventType());
+        if (typed != null) {
+            typed.remove(key);
+        }
+    }
+
+    private static double sortValue(String sort, Event event) {
+        switch (sort) {
+            case SORT_DATE:
+                // Undated events sort after every dated one
+                LocalDate date = EventDateIndex.parseDate(event.getDate());
+                return date == null ? Double.MAX_VALUE : date.toEpochDay();
+            case SORT_REMAINING:
+                return event.getCapacity() - event.getRegisteredCount();
+            default:
+                return event.calculateCost();
+        }
+    }
+
+    private static String encodeCursor(Key key) {
+        return Double.doubleToLongBits(key.value) + ":" + key.eventId;
+    }
+
+    private static Key decodeCursor(String cursor) {
+        int colon = cursor.indexOf(':');
+        try {
+            return new Key(Double.longBitsToDouble(Long.parseLong(cursor.substring(0, colon))),
+                    cursor.substring(colon + 1));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor);
+        }
+    }
+}
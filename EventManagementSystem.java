@@ -1,38 +1,143 @@
 import exceptions.DuplicateRegistrationException;
 import exceptions.EventCapacityExceededException;
+import exceptions.EventNotFoundException;
 import exceptions.InvalidDateException;
 import exceptions.UserNotFoundException;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
 import java.time.LocalDate;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
 
 public class EventManagementSystem {
+    private static final int PAGE_SIZE = 20;
+    private static final Instrumentation.Operation USER_LOOKUP = Instrumentation.operation("user.lookup");
+    private static final Instrumentation.Operation SEARCH_DATE = Instrumentation.operation("search.byDate");
+    private static final Instrumentation.Operation SEARCH_RANGE = Instrumentation.operation("search.dateRange");
+    private static final Instrumentation.Operation SEARCH_KEYWORD = Instrumentation.operation("search.keyword");
+    private static final Instrumentation.Operation LIST_EVENTS = Instrumentation.operation("search.listPage");
+    private static final Instrumentation.Operation ORGANIZER_EVENTS = Instrumentation.operation("search.organizerPage");
+    private static final Instrumentation.Operation EVENT_CREATE = Instrumentation.operation("event.create");
+    private static final Instrumentation.Operation EVENT_UPDATE = Instrumentation.operation("event.update");
+    private static final Instrumentation.Operation EVENT_DELETE = Instrumentation.operation("event.delete");
+
     private ArrayList<Person> users;
     private ArrayList<Event> events;
-    private ArrayList<Registration> registrations;
-    private HashMap<String, Person> userMap;
-    private HashMap<String, Event> eventMap;
+    private Map<String, Person> userMap;
+    private Map<String, Event> eventMap;
+    private RegistrationService registrationService;
+    private MappedRegistrationFile registrationHistory;
+    private ReportMetrics metrics;
+    private EventDateIndex dateIndex;
+    private EventSearchIndex searchIndex;
+    private EventListing listing;
+    private EventOrganizerIndex organizerIndex;
+    private EventCache eventCache;
+    private StorageEngine storage;
+    private final List<Consumer<Person>> userRemovedListeners = new CopyOnWriteArrayList<>();
+    private PrintWriter out;
     private Scanner scanner;
     private Person currentUser;
 
+    // Storage engine picked with -Dems.storage (see StorageEngine)
     public EventManagementSystem() {
-        users = FileHandler.loadUsers();
-        events = FileHandler.loadEvents();
-        registrations = FileHandler.loadRegistrations();
-        userMap = new HashMap<>();
-        eventMap = new HashMap<>();
+        this(openStorage());
+    }
+
+    public EventManagementSystem(StorageEngine storage) {
+        this.storage = storage;
+        users = new ArrayList<>();
+        events = new ArrayList<>();
+        ArrayList<Registration> registrations = new ArrayList<>();
+        try {
+            storage.load(users, events, registrations);
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot load data: " + e.getMessage(), e);
+        }
+        registrationHistory = FileHandler.openMappedRegistrations(registrations);
+        userMap = new ConcurrentHashMap<>();
+        eventMap = new ConcurrentHashMap<>();
+        dateIndex = new EventDateIndex(events);
+        searchIndex = new EventSearchIndex(events);
+        listing = new EventListing(events);
+        organizerIndex = new EventOrganizerIndex(events);
+        eventCache = new EventCache();
+        out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(System.out)));
         scanner = new Scanner(System.in);
 
         // Populate hash maps
+        metrics = new ReportMetrics();
         for (Person user : users) {
             userMap.put(user.getId(), user);
+            metrics.userAdded(user);
         }
         for (Event event : events) {
             eventMap.put(event.getEventId(), event);
+            metrics.eventAdded(event);
         }
+        // Opt-in: java -Dems.compactRegistrations=true EventManagementSystem
+        RegistrationStore store = Boolean.getBoolean("ems.compactRegistrations")
+                ? new CompactRegistrationStore() : new IndexedRegistrationStore();
+        // Load order is persisted order, so each event's queue comes back in FIFO order
+        Waitlist waitlist = new Waitlist();
+        HashSet<String> loaded = new HashSet<>();
+        for (Registration reg : registrations) {
+            metrics.registrationAdded(reg);
+            if (registrationHistory != null) {
+                loaded.add(reg.getRegistrationId());
+                if (reg.getStatus().equals("CANCELLED")) {
+                    continue; // read back from the mapping when needed
+                }
+            }
+            store.add(reg);
+            if (reg.getStatus().equals("WAITLISTED")) {
+                waitlist.add(reg);
+            }
+        }
+        if (registrationHistory != null) {
+            // Cancelled rows that stayed in the mapping and never reached the list still count
+            for (int i = 0; i < registrationHistory.size(); i++) {
+                if (registrationHistory.getStatus(i).equals("CANCELLED")
+                        && !loaded.contains(registrationHistory.getRegistrationId(i))) {
+                    metrics.registrationAdded(registrationHistory.get(i));
+                }
+            }
+        }
+        registrationService = new RegistrationService(eventMap, userMap, store, waitlist, metrics, listing, storage,
+                registrationHistory);
+    }
+
+    private static StorageEngine openStorage() {
+        try {
+            return StorageEngine.open();
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot open storage: " + e.getMessage(), e);
+        }
+    }
+
+    public StorageEngine getStorage() {
+        return storage;
+    }
+
+    // Flushes and releases the storage engine; the system is unusable afterwards
+    public void close() {
+        storage.close();
+    }
+
+    // Node ID separates generators running in different processes: -Dems.nodeId=<0-1023>
+    private static volatile IdGenerator idGenerator =
+            new SnowflakeIdGenerator(Integer.getInteger("ems.nodeId", 0));
+
+    public static void setIdGenerator(IdGenerator generator) {
+        idGenerator = generator;
     }
 
     public static String generateId(String prefix) {
-        return prefix + System.currentTimeMillis();
+        return idGenerator.nextId(prefix);
     }
 
     public static boolean validateEmail(String email) {
@@ -47,32 +152,252 @@ public class EventManagementSystem {
             int day = Integer.parseInt(parts[0]);
             int month = Integer.parseInt(parts[1]);
             int year = Integer.parseInt(parts[2]);
-            return day >= 1 && day <= 31 && month >= 1 && month <= 12 && year >= 2023;
+            return day >= 1 && day <= 31 && month >= 1 && month <= 12 && year >= 2023
+                    && EventDateIndex.parseDate(date) != null;
         } catch (NumberFormatException e) {
             return false;
         }
     }
 
     public Person searchUserById(String userId) throws UserNotFoundException {
-        Person user = userMap.get(userId);
-        if (user == null) {
-            throw new UserNotFoundException("User with ID " + userId + " not found.");
+        long start = System.nanoTime();
+        try {
+            Person user = userMap.get(userId);
+            if (user == null) {
+                UserNotFoundException e = new UserNotFoundException("User with ID " + userId + " not found.");
+                USER_LOOKUP.error(e);
+                throw e;
+            }
+            return user;
+        } finally {
+            USER_LOOKUP.record(start);
+        }
+    }
+
+    // Every ID must be an existing attendee before any seat is reserved
+    public List<Registration> registerGroup(String eventId, List<String> userIds)
+            throws UserNotFoundException, EventNotFoundException, DuplicateRegistrationException,
+            EventCapacityExceededException {
+        if (userIds.isEmpty()) {
+            throw new IllegalArgumentException("No attendees given!");
         }
-        return user;
+        ArrayList<String> invalid = new ArrayList<>();
+        for (String userId : userIds) {
+            Person user = userMap.get(userId);
+            if (user == null || !user.getRole().equals("ATTENDEE")) {
+                invalid.add(userId);
+            }
+        }
+        if (!invalid.isEmpty()) {
+            throw new UserNotFoundException("Not attendees: " + String.join(", ", invalid));
+        }
+        return registrationService.registerBatch(userIds, eventId);
+    }
+
+    public Event getEvent(String eventId) {
+        return eventMap.get(eventId);
+    }
+
+    // Null when there is no such user (any more)
+    public Person getUser(String userId) {
+        return userMap.get(userId);
+    }
+
+    // Deletes the user with their registrations, then tells the listeners (e.g. to end sessions)
+    public void removeUser(Person user) {
+        users.remove(user);
+        userMap.remove(user.getId());
+        metrics.userRemoved(user);
+
+        // Registrations go first: their batches carry the freed seats and promotions,
+        // so storage never holds registrations for a user it no longer has
+        registrationService.removeUser(user.getId());
+        storage.writeOrUndo(new WriteBatch().deleteUser(user.getId()), null);
+        for (Consumer<Person> listener : userRemovedListeners) {
+            listener.accept(user);
+        }
+    }
+
+    public void onUserRemoved(Consumer<Person> listener) {
+        userRemovedListeners.add(listener);
+    }
+
+    public Collection<Event> getEvents() {
+        return Collections.unmodifiableCollection(eventMap.values());
+    }
+
+    public Collection<Person> getUsers() {
+        return Collections.unmodifiableCollection(userMap.values());
+    }
+
+    public RegistrationService getRegistrationService() {
+        return registrationService;
+    }
+
+    public EventCache getEventCache() {
+        return eventCache;
+    }
+
+    public ReportMetrics getMetrics() {
+        return metrics;
+    }
+
+    public LinkedHashMap<String, Number> getReportCounts() {
+        ReportMetrics.OrganizerTotals totals = metrics.getTotals();
+        LinkedHashMap<String, Number> counts = new LinkedHashMap<>();
+        counts.put("users", userMap.size());
+        counts.put("events", eventMap.size());
+        // Summed from the status counts: in mapped mode the store holds no CANCELLED rows
+        long registrations = 0;
+        for (long count : metrics.getRegistrationsByStatus().values()) {
+            registrations += count;
+        }
+        counts.put("registrations", registrations);
+        counts.put("admins", metrics.usersWithRole("ADMIN"));
+        counts.put("organizers", metrics.usersWithRole("ORGANIZER"));
+        counts.put("attendees", metrics.usersWithRole("ATTENDEE"));
+        counts.put("conferences", metrics.eventsOfType("CONFERENCE"));
+        counts.put("workshops", metrics.eventsOfType("WORKSHOP"));
+        counts.put("concerts", metrics.eventsOfType("CONCERT"));
+        counts.put("activeRegistrations", metrics.registrationsWithStatus("ACTIVE"));
+        counts.put("cancelledRegistrations", metrics.registrationsWithStatus("CANCELLED"));
+        counts.put("waitlistedRegistrations", metrics.registrationsWithStatus("WAITLISTED"));
+        counts.put("seatsSold", totals.getSeatsSold());
+        counts.put("seatsRemaining", totals.getSeatsRemaining());
+        counts.put("revenue", totals.getRevenue());
+        return counts;
     }
 
     public Event[] searchEventsByDate(String date) {
-        ArrayList<Event> matchingEvents = new ArrayList<>();
-        for (Event event : events) {
-            if (event.getDate().equals(date)) {
-                matchingEvents.add(event);
+        long start = System.nanoTime();
+        try {
+            LocalDate day = EventDateIndex.parseDate(date);
+            if (day == null) {
+                return new Event[0];
             }
+            return eventCache.query(EventCache.byDate(day), () -> dateIndex.findByDate(day)).toArray(new Event[0]);
+        } finally {
+            SEARCH_DATE.record(start);
         }
-        return matchingEvents.toArray(new Event[0]);
     }
 
+    public Event[] searchEventsBetween(LocalDate from, LocalDate to) {
+        long start = System.nanoTime();
+        try {
+            return dateIndex.findBetween(from, to).toArray(new Event[0]);
+        } finally {
+            SEARCH_RANGE.record(start);
+        }
+    }
+
+    public Event[] searchEventsByKeyword(String query, int limit) {
+        long start = System.nanoTime();
+        try {
+            return searchIndex.search(query, limit).toArray(new Event[0]);
+        } finally {
+            SEARCH_KEYWORD.record(start);
+        }
+    }
+
+    public EventListing.Page listEvents(String sort, String type, boolean descending, String cursor, int pageSize) {
+        long start = System.nanoTime();
+        try {
+            return listing.page(sort, type, descending, cursor, pageSize);
+        } catch (RuntimeException e) {
+            LIST_EVENTS.error(e);
+            throw e;
+        } finally {
+            LIST_EVENTS.record(start);
+        }
+    }
+
+    // One organizer's events in creation order, a page at a time
+    public EventListing.Page listOrganizerEvents(String organizerId, String cursor, int pageSize) {
+        long start = System.nanoTime();
+        try {
+            return organizerIndex.page(organizerId, cursor, pageSize);
+        } catch (RuntimeException e) {
+            ORGANIZER_EVENTS.error(e);
+            throw e;
+        } finally {
+            ORGANIZER_EVENTS.record(start);
+        }
+    }
+
+    // Event CRUD below keeps every index, counter and the journal in step with the catalog
+    public void addEvent(Event event) {
+        long start = System.nanoTime();
+        try {
+            events.add(event);
+            eventMap.put(event.getEventId(), event);
+            metrics.eventAdded(event);
+            dateIndex.add(event);
+            searchIndex.add(event);
+            listing.add(event);
+            organizerIndex.add(event);
+            eventCache.eventAdded(event);
+            registrationService.saveEvent(event, () -> {
+                events.remove(event);
+                eventMap.remove(event.getEventId());
+                metrics.eventRemoved(event);
+                dateIndex.remove(event);
+                searchIndex.remove(event);
+                listing.remove(event);
+                organizerIndex.remove(event);
+                eventCache.eventRemoved(event, EventDateIndex.parseDate(event.getDate()));
+            });
+        } finally {
+            EVENT_CREATE.record(start);
+        }
+    }
+
+    // Call after changing an event's title, description, venue or date
+    public void saveEvent(Event event) {
+        long start = System.nanoTime();
+        try {
+            LocalDate filed = dateIndex.indexedDate(event.getEventId());
+            if (dateIndex.update(event)) {
+                eventCache.eventMoved(filed, dateIndex.indexedDate(event.getEventId()));
+            }
+            searchIndex.update(event);
+            listing.reposition(event);
+            registrationService.saveEvent(event, null);
+        } finally {
+            EVENT_UPDATE.record(start);
+        }
+    }
+
+    public void removeEvent(Event event) {
+        long start = System.nanoTime();
+        try {
+            LocalDate filed = dateIndex.indexedDate(event.getEventId());
+            events.remove(event);
+            eventMap.remove(event.getEventId());
+            dateIndex.remove(event);
+            searchIndex.remove(event);
+            listing.remove(event);
+            organizerIndex.remove(event);
+            eventCache.eventRemoved(event, filed);
+
+            // Deletes the event and its registrations from storage in one batch
+            registrationService.removeEvent(event.getEventId());
+            metrics.eventRemoved(event);
+        } finally {
+            EVENT_DELETE.record(start);
+        }
+    }
+
+    public Event[] searchUpcomingEvents(int days) {
+        LocalDate today = LocalDate.now();
+        return searchEventsBetween(today, today.plusDays(days));
+    }
+
+    // Undated or unparseable events sort last
+    public static final Comparator<Event> BY_DATE = Comparator.comparing(
+            (Event event) -> EventDateIndex.parseDate(event.getDate()), Comparator.nullsLast(Comparator.naturalOrder()));
+
     public void sortEventsByDate() {
-        events.sort(Comparator.comparing(Event::getDate));
+        events.sort(BY_DATE);
     }
 
     public void start() {
@@ -105,6 +430,7 @@ public class EventManagementSystem {
                     break;
                 case 3:
                     saveAllData();
+                    close();
                     System.out.println("Thank you for using Event Management System!");
                     System.exit(0);
                     break;
@@ -250,7 +576,13 @@ public class EventManagementSystem {
 
             users.add(newUser);
             userMap.put(userId, newUser);
-            FileHandler.saveUsers(users);
+            metrics.userAdded(newUser);
+            Person added = newUser;
+            storage.writeOrUndo(new WriteBatch().putUser(added), () -> {
+                users.remove(added);
+                userMap.remove(userId);
+                metrics.userRemoved(added);
+            });
 
             System.out.println("Registration successful! Your User ID is: " + userId);
         } catch (Exception e) {
@@ -265,9 +597,7 @@ public class EventManagementSystem {
     }
 
     private void saveAllData() {
-        FileHandler.saveUsers(users);
-        FileHandler.saveEvents(events);
-        FileHandler.saveRegistrations(registrations);
+        storage.flush();
     }
 
     private void viewAllEvents() {
@@ -276,27 +606,106 @@ public class EventManagementSystem {
             return;
         }
 
-        System.out.println("\n=== ALL EVENTS ===");
-        for (Event event : events) {
-            displayEventDetails(event);
+        System.out.print("Sort by (date/remaining/cost) [date]: ");
+        String sort = scanner.nextLine().trim().toLowerCase();
+        if (sort.isEmpty()) {
+            sort = EventListing.SORT_DATE;
+        }
+        System.out.print("Filter by type (CONFERENCE/WORKSHOP/CONCERT) [all]: ");
+        String type = scanner.nextLine().trim().toUpperCase();
+
+        String cursor = null;
+        int pageNumber = 1;
+        try {
+            while (true) {
+                // Most seats left reads better first; date and cost ascend
+                EventListing.Page page = listEvents(sort, type.isEmpty() ? null : type,
+                        sort.equals(EventListing.SORT_REMAINING), cursor, PAGE_SIZE);
+                if (page.getEvents().isEmpty()) {
+                    System.out.println("No events found.");
+                    return;
+                }
+                out.println("\n=== ALL EVENTS (page " + pageNumber + ") ===");
+                for (Event event : page.getEvents()) {
+                    writeEventDetails(event);
+                }
+                out.flush();
+
+                cursor = page.getNextCursor();
+                if (cursor == null) {
+                    return;
+                }
+                System.out.print("Enter for next page, q to stop: ");
+                if (scanner.nextLine().trim().equalsIgnoreCase("q")) {
+                    return;
+                }
+                pageNumber++;
+            }
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
         }
     }
 
     private void displayEventDetails(Event event) {
-        System.out.println("----------------------------------------");
-        System.out.println("Event ID: " + event.getEventId());
-        System.out.println("Title: " + event.getTitle());
-        System.out.println("Type: " + event.getEventType());
-        System.out.println("Description: " + event.getDescription());
-        System.out.println("Date: " + event.getDate());
-        System.out.println("Venue: " + event.getVenue());
-        System.out.println("Capacity: " + event.getCapacity());
-        System.out.println("Available Slots: " + (event.getCapacity() - event.getRegisteredCount()));
-        System.out.println("Cost: $" + event.calculateCost());
-        System.out.println("----------------------------------------");
+        writeEventDetails(event);
+        out.flush();
+    }
+
+    private void writeEventDetails(Event event) {
+        out.print(eventCache.summary(event, "text", EventManagementSystem::renderEventDetails));
+    }
+
+    private static String renderEventDetails(Event event) {
+        String nl = System.lineSeparator();
+        return "----------------------------------------" + nl +
+                "Event ID: " + event.getEventId() + nl +
+                "Title: " + event.getTitle() + nl +
+                "Type: " + event.getEventType() + nl +
+                "Description: " + event.getDescription() + nl +
+                "Date: " + event.getDate() + nl +
+                "Venue: " + event.getVenue() + nl +
+                "Capacity: " + event.getCapacity() + nl +
+                "Available Slots: " + (event.getCapacity() - event.getRegisteredCount()) + nl +
+                "Cost: $" + event.calculateCost() + nl +
+                "----------------------------------------" + nl;
     }
 
     private void searchEvents() {
+        System.out.println("1. Search by Date");
+        System.out.println("2. Search by Date Range");
+        System.out.println("3. Upcoming Events (next 30 days)");
+        System.out.println("4. Search by Keyword");
+        System.out.print("Enter choice: ");
+
+        try {
+            int choice = scanner.nextInt();
+            scanner.nextLine();
+
+            switch (choice) {
+                case 1:
+                    searchByDate();
+                    break;
+                case 2:
+                    searchByDateRange();
+                    break;
+                case 3:
+                    showEventList("UPCOMING EVENTS", searchUpcomingEvents(30));
+                    break;
+                case 4:
+                    System.out.print("Enter keywords: ");
+                    String query = scanner.nextLine();
+                    showEventList("RESULTS FOR \"" + query + "\"", searchEventsByKeyword(query, 20));
+                    break;
+                default:
+                    System.out.println("Invalid choice!");
+            }
+        } catch (InputMismatchException e) {
+            System.out.println("Invalid input!");
+            scanner.nextLine();
+        }
+    }
+
+    private void searchByDate() {
         System.out.print("Enter date to search (dd-mm-yyyy): ");
         String date = scanner.nextLine();
 
@@ -305,11 +714,33 @@ public class EventManagementSystem {
         if (foundEvents.length == 0) {
             System.out.println("No events found for date: " + date);
         } else {
-            System.out.println("\n=== EVENTS ON " + date + " ===");
-            for (Event event : foundEvents) {
-                displayEventDetails(event);
-            }
+            showEventList("EVENTS ON " + date, foundEvents);
+        }
+    }
+
+    private void searchByDateRange() {
+        System.out.print("Enter start date (dd-mm-yyyy): ");
+        LocalDate from = EventDateIndex.parseDate(scanner.nextLine());
+        System.out.print("Enter end date (dd-mm-yyyy): ");
+        LocalDate to = EventDateIndex.parseDate(scanner.nextLine());
+
+        if (from == null || to == null) {
+            System.out.println("Invalid date format!");
+            return;
+        }
+        showEventList("EVENTS FROM " + from + " TO " + to, searchEventsBetween(from, to));
+    }
+
+    private void showEventList(String heading, Event[] foundEvents) {
+        if (foundEvents.length == 0) {
+            System.out.println("No events found.");
+            return;
         }
+        out.println("\n=== " + heading + " ===");
+        for (Event event : foundEvents) {
+            writeEventDetails(event);
+        }
+        out.flush();
     }
 
 
@@ -318,45 +749,31 @@ public class EventManagementSystem {
             System.out.print("Enter Event ID to register: ");
             String eventId = scanner.nextLine();
 
-            Event event = eventMap.get(eventId);
-            if (event == null) {
-                throw new UserNotFoundException("Event not found!");
-            }
-
-            for (Registration reg : registrations) {
-                if (reg.getUserId().equals(currentUser.getId()) &&
-                        reg.getEventId().equals(eventId) &&
-                        reg.getStatus().equals("ACTIVE")) {
-                    throw new DuplicateRegistrationException("Already registered for this event!");
+            Registration registration;
+            try {
+                registration = registrationService.register(currentUser.getId(), eventId);
+            } catch (EventCapacityExceededException e) {
+                System.out.print("Event is full! Join the waitlist? (yes/no): ");
+                if (!scanner.nextLine().equalsIgnoreCase("yes")) {
+                    return;
                 }
+                registration = registrationService.joinWaitlist(currentUser.getId(), eventId);
             }
 
-            if (event.getRegisteredCount() >= event.getCapacity()) {
-                throw new EventCapacityExceededException("Event is full!");
+            if (registration.getStatus().equals("WAITLISTED")) {
+                System.out.println("Added to the waitlist at position " +
+                        registrationService.waitlistPosition(registration) +
+                        ". Registration ID: " + registration.getRegistrationId());
+            } else {
+                System.out.println("Registration successful! Registration ID: " + registration.getRegistrationId());
             }
-
-            String regId = generateId("R");
-            String regDate = LocalDate.now().toString();
-            Registration registration = new Registration(regId, currentUser.getId(), eventId, regDate, "ACTIVE");
-
-            registrations.add(registration);
-            event.incrementRegistration();
-            FileHandler.saveRegistrations(registrations);
-            FileHandler.saveEvents(events);
-
-            System.out.println("Registration successful! Registration ID: " + regId);
         } catch (Exception e) {
             System.err.println("Registration failed: " + e.getMessage());
         }
     }
 
     private void viewMyRegistrations() {
-        ArrayList<Registration> myRegistrations = new ArrayList<>();
-        for (Registration reg : registrations) {
-            if (reg.getUserId().equals(currentUser.getId())) {
-                myRegistrations.add(reg);
-            }
-        }
+        List<Registration> myRegistrations = registrationService.getHistoryByUser(currentUser.getId());
 
         if (myRegistrations.isEmpty()) {
             System.out.println("You have no registrations.");
@@ -371,10 +788,36 @@ public class EventManagementSystem {
                 System.out.println("Event: " + event.getTitle());
                 System.out.println("Date: " + event.getDate());
                 System.out.println("Status: " + reg.getStatus());
+                if (reg.getStatus().equals("WAITLISTED")) {
+                    System.out.println("Waitlist Position: " + registrationService.waitlistPosition(reg));
+                }
                 System.out.println("Registration Date: " + reg.getRegistrationDate());
                 System.out.println("----------------------------------------");
             }
         }
+
+        System.out.print("Enter Registration ID to cancel (blank to go back): ");
+        String registrationId = scanner.nextLine().trim();
+        if (!registrationId.isEmpty()) {
+            cancelRegistration(registrationId);
+        }
+    }
+
+    private void cancelRegistration(String registrationId) {
+        try {
+            Registration reg = registrationService.get(registrationId);
+            Event event = reg == null ? null : eventMap.get(reg.getEventId());
+            System.out.print("Cancel registration for " + (event == null ? registrationId : event.getTitle()) +
+                    "? (yes/no): ");
+            if (!scanner.nextLine().equalsIgnoreCase("yes")) {
+                System.out.println("Cancellation aborted.");
+                return;
+            }
+            registrationService.cancel(currentUser.getId(), registrationId);
+            System.out.println("Registration cancelled successfully!");
+        } catch (Exception e) {
+            System.err.println("Cancellation failed: " + e.getMessage());
+        }
     }
 
     private void createEvent() {
@@ -435,9 +878,7 @@ public class EventManagementSystem {
                     throw new IllegalArgumentException("Invalid event type!");
             }
 
-            events.add(newEvent);
-            eventMap.put(eventId, newEvent);
-            FileHandler.saveEvents(events);
+            addEvent(newEvent);
 
             System.out.println("Event created successfully! Event ID: " + eventId);
         } catch (Exception e) {
@@ -446,36 +887,40 @@ public class EventManagementSystem {
     }
 
     private void manageMyEvents() {
-        ArrayList<Event> myEvents = new ArrayList<>();
-        for (Event event : events) {
-            if (event.getOrganizerId().equals(currentUser.getId())) {
-                myEvents.add(event);
+        String cursor = null;
+        int pageNumber = 1;
+        while (true) {
+            EventListing.Page page = listOrganizerEvents(currentUser.getId(), cursor, PAGE_SIZE);
+            List<Event> myEvents = page.getEvents();
+            if (myEvents.isEmpty()) {
+                System.out.println("You have no events.");
+                return;
             }
-        }
-
-        if (myEvents.isEmpty()) {
-            System.out.println("You have no events.");
-            return;
-        }
-
-        System.out.println("\n=== MY EVENTS ===");
-        for (int i = 0; i < myEvents.size(); i++) {
-            System.out.println((i + 1) + ". " + myEvents.get(i).getTitle() +
-                    " (ID: " + myEvents.get(i).getEventId() + ")");
-        }
 
-        System.out.print("Select event to manage (0 to go back): ");
-        try {
-            int choice = scanner.nextInt();
-            scanner.nextLine();
+            System.out.println("\n=== MY EVENTS (page " + pageNumber + ") ===");
+            for (int i = 0; i < myEvents.size(); i++) {
+                Event event = myEvents.get(i);
+                System.out.println((i + 1) + ". " + event.getTitle() + " (ID: " + event.getEventId() + ") " +
+                        event.getRegisteredCount() + "/" + event.getCapacity() + " sold");
+            }
 
-            if (choice > 0 && choice <= myEvents.size()) {
-                Event selectedEvent = myEvents.get(choice - 1);
-                manageEvent(selectedEvent);
+            boolean more = page.getNextCursor() != null;
+            System.out.print("Select event to manage (0 to go back" + (more ? ", n for next page" : "") + "): ");
+            String input = scanner.nextLine().trim();
+            if (more && input.equalsIgnoreCase("n")) {
+                cursor = page.getNextCursor();
+                pageNumber++;
+                continue;
             }
-        } catch (InputMismatchException e) {
-            System.out.println("Invalid input!");
-            scanner.nextLine();
+            try {
+                int choice = Integer.parseInt(input);
+                if (choice > 0 && choice <= myEvents.size()) {
+                    manageEvent(myEvents.get(choice - 1));
+                }
+            } catch (NumberFormatException e) {
+                System.out.println("Invalid input!");
+            }
+            return;
         }
     }
 
@@ -485,6 +930,7 @@ public class EventManagementSystem {
         System.out.println("2. View Attendees");
         System.out.println("3. Update Event");
         System.out.println("4. Delete Event");
+        System.out.println("5. Register Group");
         System.out.print("Enter choice: ");
 
         try {
@@ -504,6 +950,9 @@ public class EventManagementSystem {
                 case 4:
                     deleteEvent(event);
                     break;
+                case 5:
+                    registerGroup(event);
+                    break;
                 default:
                     System.out.println("Invalid choice!");
             }
@@ -513,13 +962,28 @@ public class EventManagementSystem {
         }
     }
 
+    private void registerGroup(Event event) {
+        System.out.print("Enter attendee User IDs (comma separated): ");
+        ArrayList<String> userIds = new ArrayList<>();
+        for (String id : scanner.nextLine().split(",")) {
+            if (!id.trim().isEmpty()) {
+                userIds.add(id.trim());
+            }
+        }
+        try {
+            List<Registration> batch = registerGroup(event.getEventId(), userIds);
+            System.out.println("Registered " + batch.size() + " attendees for " + event.getTitle() + ".");
+        } catch (Exception e) {
+            System.err.println("Group registration failed, nobody was registered: " + e.getMessage());
+        }
+    }
+
     private void viewEventAttendees(Event event) {
         System.out.println("\n=== ATTENDEES FOR " + event.getTitle() + " ===");
 
         boolean hasAttendees = false;
-        for (Registration reg : registrations) {
-            if (reg.getEventId().equals(event.getEventId()) &&
-                    reg.getStatus().equals("ACTIVE")) {
+        for (Registration reg : registrationService.getByEvent(event.getEventId())) {
+            if (reg.getStatus().equals("ACTIVE")) {
                 Person attendee = userMap.get(reg.getUserId());
                 if (attendee != null) {
                     System.out.println("Name: " + attendee.getName());
@@ -556,7 +1020,31 @@ public class EventManagementSystem {
             event.setVenue(newVenue);
         }
 
-        FileHandler.saveEvents(events);
+        System.out.print("New Date (current: " + event.getDate() + "): ");
+        String newDate = scanner.nextLine();
+        if (!newDate.trim().isEmpty()) {
+            if (validateDate(newDate)) {
+                event.setDate(newDate);
+            } else {
+                System.out.println("Invalid date format, keeping " + event.getDate());
+            }
+        }
+
+        System.out.print("New Capacity (current: " + event.getCapacity() + "): ");
+        String newCapacity = scanner.nextLine();
+        if (!newCapacity.trim().isEmpty()) {
+            try {
+                int promoted = registrationService.changeCapacity(event, Integer.parseInt(newCapacity.trim())).size();
+                if (promoted > 0) {
+                    System.out.println(promoted + " waitlisted attendee(s) promoted.");
+                }
+            } catch (IllegalArgumentException e) {
+                System.out.println("Invalid capacity, keeping " + event.getCapacity() +
+                        (e instanceof NumberFormatException ? "" : ": " + e.getMessage()));
+            }
+        }
+
+        saveEvent(event);
         System.out.println("Event updated successfully!");
     }
 
@@ -565,13 +1053,7 @@ public class EventManagementSystem {
         String confirmation = scanner.nextLine();
 
         if (confirmation.equalsIgnoreCase("yes")) {
-            events.remove(event);
-            eventMap.remove(event.getEventId());
-
-            registrations.removeIf(reg -> reg.getEventId().equals(event.getEventId()));
-            FileHandler.saveEvents(events);
-            FileHandler.saveRegistrations(registrations);
-
+            removeEvent(event);
             System.out.println("Event deleted successfully!");
         } else {
             System.out.println("Event deletion cancelled.");
@@ -643,7 +1125,12 @@ public class EventManagementSystem {
 
             users.add(newAdmin);
             userMap.put(userId, newAdmin);
-            FileHandler.saveUsers(users);
+            metrics.userAdded(newAdmin);
+            storage.writeOrUndo(new WriteBatch().putUser(newAdmin), () -> {
+                users.remove(newAdmin);
+                userMap.remove(userId);
+                metrics.userRemoved(newAdmin);
+            });
 
             System.out.println("Admin user created successfully! User ID: " + userId);
         } catch (Exception e) {
@@ -670,13 +1157,7 @@ public class EventManagementSystem {
             String confirmation = scanner.nextLine();
 
             if (confirmation.equalsIgnoreCase("yes")) {
-                users.remove(userToDelete);
-                userMap.remove(userId);
-
-                registrations.removeIf(reg -> reg.getUserId().equals(userId));
-                FileHandler.saveUsers(users);
-                FileHandler.saveRegistrations(registrations);
-
+                removeUser(userToDelete);
                 System.out.println("User deleted successfully!");
             } else {
                 System.out.println("User deletion cancelled.");
@@ -687,42 +1168,65 @@ public class EventManagementSystem {
     }
 
     private void viewReports() {
+        LinkedHashMap<String, Number> counts = getReportCounts();
         System.out.println("\n=== SYSTEM REPORTS ===");
-        System.out.println("Total Users: " + users.size());
-        System.out.println("Total Events: " + events.size());
-        System.out.println("Total Registrations: " + registrations.size());
-
-        int admins = 0, organizers = 0, attendees = 0;
-        for (Person user : users) {
-            switch (user.getRole()) {
-                case "ADMIN": admins++; break;
-                case "ORGANIZER": organizers++; break;
-                case "ATTENDEE": attendees++; break;
-            }
-        }
+        System.out.println("Total Users: " + counts.get("users"));
+        System.out.println("Total Events: " + counts.get("events"));
+        System.out.println("Total Registrations: " + counts.get("registrations"));
 
         System.out.println("\nUsers by Role:");
-        System.out.println("- Admins: " + admins);
-        System.out.println("- Organizers: " + organizers);
-        System.out.println("- Attendees: " + attendees);
-
-        int conferences = 0, workshops = 0, concerts = 0;
-        for (Event event : events) {
-            switch (event.getEventType()) {
-                case "CONFERENCE": conferences++; break;
-                case "WORKSHOP": workshops++; break;
-                case "CONCERT": concerts++; break;
-            }
-        }
+        System.out.println("- Admins: " + counts.get("admins"));
+        System.out.println("- Organizers: " + counts.get("organizers"));
+        System.out.println("- Attendees: " + counts.get("attendees"));
 
         System.out.println("\nEvents by Type:");
-        System.out.println("- Conferences: " + conferences);
-        System.out.println("- Workshops: " + workshops);
-        System.out.println("- Concerts: " + concerts);
+        System.out.println("- Conferences: " + counts.get("conferences"));
+        System.out.println("- Workshops: " + counts.get("workshops"));
+        System.out.println("- Concerts: " + counts.get("concerts"));
+
+        System.out.println("\nRegistrations by Status:");
+        System.out.println("- Active: " + counts.get("activeRegistrations"));
+        System.out.println("- Cancelled: " + counts.get("cancelledRegistrations"));
+
+        System.out.println("\nSeats Sold: " + counts.get("seatsSold"));
+        System.out.println("Seats Remaining: " + counts.get("seatsRemaining"));
+        System.out.println("Revenue: $" + counts.get("revenue"));
     }
 
     public static void main(String[] args) {
-        EventManagementSystem system = new EventManagementSystem();
+        if (args.length > 0 && args[0].equals("import")) {
+            BulkImporter.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        if (args.length > 0 && args[0].equals("generate")) {
+            DataGenerator.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        if (args.length > 0 && args[0].equals("analytics")) {
+            AnalyticsReport.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        if (args.length > 0 && args[0].equals("selfcheck")) {
+            SelfCheck.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        EventManagementSystem system;
+        try {
+            system = new EventManagementSystem();
+        } catch (IllegalStateException e) {
+            System.err.println(e.getMessage());
+            System.exit(1);
+            return;
+        }
+        if (args.length > 0 && args[0].equals("serve")) {
+            int port = args.length > 1 ? Integer.parseInt(args[1]) : 8080;
+            try {
+                new ApiServer(system, port).start();
+            } catch (IOException e) {
+                System.err.println("Could not start API server: " + e.getMessage());
+            }
+            return;
+        }
         system.start();
     }
 }
\ No newline at end of file
@@ -0,0 +1,80 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+// organizerId -> that organizer's events in creation order, so organizer views cost
+// O(own events) instead of a catalog scan. Each event gets a sequence number when it is filed
+// (load order is persisted order, which is creation order); pages are keyset-paginated on it
+// and the cursor is the last sequence number of the previous page.
+public class EventOrganizerIndex {
+    private HashMap<String, TreeMap<Long, Event>> byOrganizer;
+    private HashMap<String, Long> sequences; // eventId -> its key within the organizer's map
+    private long nextSequence;
+
+    public EventOrganizerIndex() {
+        byOrganizer = new HashMap<>();
+        sequences = new HashMap<>();
+    }
+
+    public EventOrganizerIndex(List<Event> events) {
+        this();
+        for (Event event : events) {
+            add(event);
+        }
+    }
+
+    public synchronized void add(Event event) {
+        if (sequences.containsKey(event.getEventId())) {
+            return;
+        }
+        long sequence = nextSequence++;
+        byOrganizer.computeIfAbsent(event.getOrganizerId(), k -> new TreeMap<>()).put(sequence, event);
+        sequences.put(event.getEventId(), sequence);
+    }
+
+    public synchronized void remove(Event event) {
+        Long sequence = sequences.remove(event.getEventId());
+        if (sequence == null) {
+            return;
+        }
+        TreeMap<Long, Event> own = byOrganizer.get(event.getOrganizerId());
+        if (own != null) {
+            own.remove(sequence);
+            if (own.isEmpty()) {
+                byOrganizer.remove(event.getOrganizerId());
+            }
+        }
+    }
+
+    // Up to pageSize events after cursor (null for the first page)
+    public synchronized EventListing.Page page(String organizerId, String cursor, int pageSize) {
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("Page size must be positive");
+        }
+        TreeMap<Long, Event> own = byOrganizer.get(organizerId);
+        ArrayList<Event> events = new ArrayList<>(Math.min(pageSize, own == null ? 0 : own.size()));
+        if (own == null) {
+            return new EventListing.Page(events, null);
+        }
+        Map<Long, Event> rest = cursor == null ? own : own.tailMap(parseCursor(cursor), false);
+        long last = -1;
+        for (Map.Entry<Long, Event> entry : rest.entrySet()) {
+            if (events.size() == pageSize) {
+                return new EventListing.Page(events, Long.toString(last));
+            }
+            events.add(entry.getValue());
+            last = entry.getKey();
+        }
+        return new EventListing.Page(events, null);
+    }
+
+    private static long parseCursor(String cursor) {
+        try {
+            return Long.parseLong(cursor);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+    }
+}
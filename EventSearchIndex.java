@@ -0,0 +1,361 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Inverted index over title, venue and description. Each query term matches every indexed
+// token it is a prefix of ("work" -> "workshop"), all terms must match, and events are
+// ranked by summed field weights with a bonus for whole-word hits.
+//
+// Every indexed event gets an increasing ordinal, so posting lists are sorted int arrays that
+// only ever grow at the end and can be intersected with galloping search. Removed or
+// re-indexed events just clear their live bit; postings drop dead entries when they are
+// mostly garbage, and the whole index is rebuilt once dead ordinals outnumber live ones.
+public class EventSearchIndex {
+    private static final int TITLE_WEIGHT = 3;
+    private static final int VENUE_WEIGHT = 2;
+    private static final int DESCRIPTION_WEIGHT = 1;
+    private static final int EXACT_BONUS = 2;
+    private static final int MAX_GALLOPED_TOKENS = 8;
+
+    private TreeMap<String, Postings> postings;
+    private ArrayList<Event> docs;          // ordinal -> event
+    private ArrayList<String[]> docTokens;  // ordinal -> tokens it was indexed under
+    private HashMap<String, Integer> ordinals;
+    private BitSet live;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private static class Postings {
+        int[] docs = new int[4];
+        int[] weights = new int[4];
+        int size;
+        int dead;
+
+        void append(int doc, int weight) {
+            if (size == docs.length) {
+                docs = Arrays.copyOf(docs, size * 2);
+                weights = Arrays.copyOf(weights, size * 2);
+            }
+            docs[size] = doc;
+            weights[size] = weight;
+            size++;
+        }
+
+        void purge(BitSet live) {
+            int kept = 0;
+            for (int i = 0; i < size; i++) {
+                if (live.get(docs[i])) {
+                    docs[kept] = docs[i];
+                    weights[kept] = weights[i];
+                    kept++;
+                }
+            }
+            size = kept;
+            dead = 0;
+        }
+
+        // First index >= from whose doc is >= target
+        int gallop(int from, int target) {
+            int step = 1;
+            int hi = from;
+            while (hi < size && docs[hi] < target) {
+                from = hi + 1;
+                hi += step;
+                step <<= 1;
+            }
+            int pos = Arrays.binarySearch(docs, from, Math.min(hi + 1, size), target);
+            return pos >= 0 ? pos : -pos - 1;
+        }
+    }
+
+    public EventSearchIndex() {
+        clear();
+    }
+
+    public EventSearchIndex(List<Event> events) {
+        this();
+        for (Event event : events) {
+            add(event);
+        }
+    }
+
+    public void add(Event event) {
+        HashMap<String, Integer> tokens = tokensOf(event);
+        lock.writeLock().lock();
+        try {
+            removeLocked(event.getEventId());
+            insertLocked(event, tokens);
+            if (docs.size() > 1024 && docs.size() > 2 * ordinals.size()) {
+                rebuildLocked();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Re-indexes after title/venue/description changes
+    public void update(Event event) {
+        add(event);
+    }
+
+    public void remove(Event event) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(event.getEventId());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return ordinals.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public List<Event> search(String query, int limit) {
+        ArrayList<String> terms = tokenize(query);
+        if (terms.isEmpty() || limit <= 0) {
+            return new ArrayList<>();
+        }
+
+        lock.readLock().lock();
+        try {
+            // Expand each term to the posting lists of every token it prefixes
+            ArrayList<Postings[]> lists = new ArrayList<>();
+            ArrayList<int[]> bonuses = new ArrayList<>();
+            int driver = 0;
+            long driverSize = Long.MAX_VALUE;
+            for (String term : terms) {
+                Map<String, Postings> expanded = postings.subMap(term, true, term + Character.MAX_VALUE, false);
+                if (expanded.isEmpty()) {
+                    return new ArrayList<>();
+                }
+                Postings[] termLists = new Postings[expanded.size()];
+                int[] termBonus = new int[expanded.size()];
+                long size = 0;
+                int i = 0;
+                for (Map.Entry<String, Postings> entry : expanded.entrySet()) {
+                    termLists[i] = entry.getValue();
+                    termBonus[i] = entry.getKey().equals(term) ? EXACT_BONUS : 0;
+                    size += entry.getValue().size;
+                    i++;
+                }
+                // A short prefix can expand to thousands of tokens; merge those into one list
+                if (termLists.length > MAX_GALLOPED_TOKENS) {
+                    termLists = new Postings[]{union(termLists, termBonus)};
+                    termBonus = new int[1];
+                }
+                if (size < driverSize) {
+                    driver = lists.size();
+                    driverSize = size;
+                }
+                lists.add(termLists);
+                bonuses.add(termBonus);
+            }
+
+            // Walk the most selective term and gallop through the others
+            Postings[] driverLists = lists.get(driver);
+            int[] driverBonus = bonuses.get(driver);
+            boolean ascending = driverLists.length == 1;
+            int[][] cursors = new int[lists.size()][];
+            for (int t = 0; t < lists.size(); t++) {
+                cursors[t] = new int[lists.get(t).length];
+            }
+            PriorityQueue<long[]> top = new PriorityQueue<>(
+                    (a, b) -> a[0] != b[0] ? Long.compare(a[0], b[0]) : Long.compare(b[1], a[1]));
+            for (int d = 0; d < driverLists.length; d++) {
+                Postings list = driverLists[d];
+                scan:
+                for (int i = 0; i < list.size; i++) {
+                    int doc = list.docs[i];
+                    if (!live.get(doc)) {
+                        continue;
+                    }
+                    int score = best(driverLists, driverBonus, doc, d, list.weights[i] + driverBonus[d]);
+                    if (score < 0) {
+                        continue; // already scored under an earlier expansion of the driver
+                    }
+                    for (int t = 0; t < lists.size(); t++) {
+                        if (t == driver) {
+                            continue;
+                        }
+                        int termScore = probe(lists.get(t), bonuses.get(t), cursors[t], doc, ascending);
+                        if (termScore == 0) {
+                            // Leapfrog: nothing before the other list's next doc can match
+                            if (ascending && lists.get(t).length == 1) {
+                                Postings other = lists.get(t)[0];
+                                if (cursors[t][0] >= other.size) {
+                                    break scan;
+                                }
+                                i = list.gallop(i + 1, other.docs[cursors[t][0]]) - 1;
+                            }
+                            continue scan;
+                        }
+                        score += termScore;
+                    }
+                    top.add(new long[]{score, doc});
+                    if (top.size() > limit) {
+                        top.poll();
+                    }
+                }
+            }
+
+            ArrayList<Event> result = new ArrayList<>(top.size());
+            while (!top.isEmpty()) {
+                result.add(docs.get((int) top.poll()[1]));
+            }
+            Collections.reverse(result);
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public static ArrayList<String> tokenize(String text) {
+        ArrayList<String> tokens = new ArrayList<>();
+        if (text == null) {
+            return tokens;
+        }
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean wordChar = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                tokens.add(text.substring(start, i).toLowerCase());
+                start = -1;
+            }
+        }
+        return tokens;
+    }
+
+    private static HashMap<String, Integer> tokensOf(Event event) {
+        HashMap<String, Integer> tokens = new HashMap<>();
+        collect(tokens, event.getTitle(), TITLE_WEIGHT);
+        collect(tokens, event.getVenue(), VENUE_WEIGHT);
+        collect(tokens, event.getDescription(), DESCRIPTION_WEIGHT);
+        return tokens;
+    }
+
+    private static void collect(HashMap<String, Integer> tokens, String text, int weight) {
+        for (String token : tokenize(text)) {
+            tokens.merge(token, weight, Integer::sum);
+        }
+    }
+
+    // Best weight for doc across the driver's expansions, or -1 if an earlier list already has it
+    private static int best(Postings[] lists, int[] bonus, int doc, int current, int weight) {
+        int best = weight;
+        for (int i = 0; i < lists.length; i++) {
+            if (i == current) {
+                continue;
+            }
+            int pos = Arrays.binarySearch(lists[i].docs, 0, lists[i].size, doc);
+            if (pos >= 0) {
+                if (i < current) {
+                    return -1;
+                }
+                best = Math.max(best, lists[i].weights[pos] + bonus[i]);
+            }
+        }
+        return best;
+    }
+
+    // Cursors only move forward while the driver walks a single ascending list
+    private static int probe(Postings[] lists, int[] bonus, int[] cursors, int doc, boolean ascending) {
+        int best = 0;
+        for (int i = 0; i < lists.length; i++) {
+            Postings list = lists[i];
+            int pos = list.gallop(ascending ? cursors[i] : 0, doc);
+            if (ascending) {
+                cursors[i] = pos;
+            }
+            if (pos < list.size && list.docs[pos] == doc) {
+                best = Math.max(best, list.weights[pos] + bonus[i]);
+            }
+        }
+        return best;
+    }
+
+    // Packs (doc, weight) into longs so one sort orders by doc and leaves the best weight last
+    private static Postings union(Postings[] lists, int[] bonus) {
+        int total = 0;
+        for (Postings list : lists) {
+            total += list.size;
+        }
+        long[] packed = new long[total];
+        int n = 0;
+        for (int i = 0; i < lists.length; i++) {
+            for (int j = 0; j < lists[i].size; j++) {
+                packed[n++] = ((long) lists[i].docs[j] << 32) | (lists[i].weights[j] + bonus[i]);
+            }
+        }
+        Arrays.sort(packed);
+        Postings result = new Postings();
+        for (int i = 0; i < n; i++) {
+            if (i + 1 == n || packed[i] >>> 32 != packed[i + 1] >>> 32) {
+                result.append((int) (packed[i] >>> 32), (int) packed[i]);
+            }
+        }
+        return result;
+    }
+
+    private void insertLocked(Event event, HashMap<String, Integer> tokens) {
+        int doc = docs.size();
+        for (Map.Entry<String, Integer> entry : tokens.entrySet()) {
+            postings.computeIfAbsent(entry.getKey(), k -> new Postings()).append(doc, entry.getValue());
+        }
+        docs.add(event);
+        docTokens.add(tokens.keySet().toArray(new String[0]));
+        ordinals.put(event.getEventId(), doc);
+        live.set(doc);
+    }
+
+    private void removeLocked(String eventId) {
+        Integer doc = ordinals.remove(eventId);
+        if (doc == null) {
+            return;
+        }
+        live.clear(doc);
+        docs.set(doc, null);
+        for (String token : docTokens.get(doc)) {
+            Postings list = postings.get(token);
+            if (list != null && ++list.dead * 2 > list.size) {
+                list.purge(live);
+                if (list.size == 0) {
+                    postings.remove(token);
+                }
+            }
+        }
+        docTokens.set(doc, null);
+    }
+
+    private void rebuildLocked() {
+        ArrayList<Event> current = new ArrayList<>();
+        for (int doc = live.nextSetBit(0); doc >= 0; doc = live.nextSetBit(doc + 1)) {
+            current.add(docs.get(doc));
+        }
+        clear();
+        for (Event event : current) {
+            insertLocked(event, tokensOf(event));
+        }
+    }
+
+    private void clear() {
+        postings = new TreeMap<>();
+        docs = new ArrayList<>();
+        docTokens = new ArrayList<>();
+        ordinals = new HashMap<>();
+        live = new BitSet();
+    }
+}
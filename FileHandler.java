@@ -1,131 +1,683 @@
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
 
 public class FileHandler {
-    private static final String USERS_FILE = "users.txt";
-    private static final String EVENTS_FILE = "events.txt";
-    private static final String REGISTRATIONS_FILE = "registrations.txt";
+    // Where the data files live: -Dems.dataDir=DIR (default the working directory)
+    private static final String DATA_DIR = System.getProperty("ems.dataDir", "");
+    private static final String USERS_FILE = dataFile("users.txt");
+    private static final String EVENTS_FILE = dataFile("events.txt");
+    private static final String REGISTRATIONS_FILE = dataFile("registrations.txt");
+    private static final String JOURNAL_FILE = dataFile("journal.log");
+    private static final String COMPACTING_FILE = dataFile("journal.compacting");
+    private static final int COMPACT_THRESHOLD = 10000;
+    public static final String SNAPSHOT_FILE = dataFile("snapshot.bin");
+    // Opt-in: java -Dems.binarySnapshot=true EventManagementSystem
+    private static final boolean BINARY_SNAPSHOT = Boolean.getBoolean("ems.binarySnapshot");
+    private static final String REGISTRATIONS_DATA_FILE = dataFile("registrations.dat");
+    // Opt-in: java -Dems.mappedRegistrations=true EventManagementSystem
+    private static final boolean MAPPED_REGISTRATIONS = Boolean.getBoolean("ems.mappedRegistrations");
+    // Opt-in: java -Dems.durableJournal=true EventManagementSystem fsyncs every journal record
+    private static final boolean DURABLE_JOURNAL = Boolean.getBoolean("ems.durableJournal");
+    // Last line of every saved file: #CRC32,<records>,<crc of everything above, hex>
+    private static final String CHECKSUM_PREFIX = "#CRC32,";
 
-    public static void saveUsers(ArrayList<Person> users) {
-        try (PrintWriter writer = new PrintWriter(new FileWriter(USERS_FILE))) {
-            for (Person user : users) {
-                writer.println(user.getId() + "," + user.getName() + "," +
-                        user.getEmail() + "," + user.getPhone() + "," + user.getRole());
-            }
+    private static FileOutputStream journalStream;
+    private static PrintWriter journalWriter;
+    private static final GroupCommit JOURNAL = new GroupCommit(FileHandler::writeJournal);
+    // registrations.dat as opened by loadDatabase when it still matched the snapshot
+    private static MappedRegistrationFile loadedMapping;
+    private static int journalRecords;
+    private static volatile boolean compacting;
+    private static ExecutorService compactor;
+
+    private static final Instrumentation.Operation SAVE_USERS = Instrumentation.operation("file.saveUsers");
+    private static final Instrumentation.Operation SAVE_EVENTS = Instrumentation.operation("file.saveEvents");
+    private static final Instrumentation.Operation SAVE_REGISTRATIONS = Instrumentation.operation("file.saveRegistrations");
+    private static final Instrumentation.Operation LOAD_USERS = Instrumentation.operation("file.loadUsers");
+    private static final Instrumentation.Operation LOAD_EVENTS = Instrumentation.operation("file.loadEvents");
+    private static final Instrumentation.Operation LOAD_REGISTRATIONS = Instrumentation.operation("file.loadRegistrations");
+    private static final Instrumentation.Operation LOAD_DATABASE = Instrumentation.operation("file.loadDatabase");
+    private static final Instrumentation.Operation CHECKPOINT = Instrumentation.operation("file.checkpoint");
+    private static final Instrumentation.Operation JOURNAL_APPEND = Instrumentation.operation("journal.append");
+    private static final Instrumentation.Operation JOURNAL_REPLAY = Instrumentation.operation("journal.replay");
+
+    public static void saveUsers(ArrayList<Person> users) throws IOException {
+        long start = System.nanoTime();
+        try {
+            writeRecords(USERS_FILE, users, RecordCodec::formatUser);
         } catch (IOException e) {
-            System.err.println("Error saving users: " + e.getMessage());
+            SAVE_USERS.error(e);
+            throw e;
+        } finally {
+            SAVE_USERS.record(start);
         }
     }
 
-    public static ArrayList<Person> loadUsers() {
-        ArrayList<Person> users = new ArrayList<>();
-        try (BufferedReader reader = new BufferedReader(new FileReader(USERS_FILE))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                String[] parts = line.split(",");
-                if (parts.length >= 5) {
-                    String id = parts[0], name = parts[1], email = parts[2], phone = parts[3], role = parts[4];
-                    switch (role) {
-                        case "ADMIN":
-                            users.add(new Admin(id, name, email, phone));
-                            break;
-                        case "ORGANIZER":
-                            users.add(new Organizer(id, name, email, phone));
-                            break;
-                        case "ATTENDEE":
-                            users.add(new Attendee(id, name, email, phone));
-                            break;
+    public static ArrayList<Person> loadUsers() throws IOException {
+        long start = System.nanoTime();
+        try {
+            return readUsers();
+        } catch (FileNotFoundException e) {
+            System.out.println("Users file not found. Starting with empty database.");
+            return new ArrayList<>();
+        } catch (IOException e) {
+            LOAD_USERS.error(e);
+            throw damaged(USERS_FILE, e);
+        } finally {
+            LOAD_USERS.record(start);
+        }
+    }
+
+    public static void saveEvents(ArrayList<Event> events) throws IOException {
+        long start = System.nanoTime();
+        try {
+            writeRecords(EVENTS_FILE, events, RecordCodec::formatEvent);
+        } catch (IOException e) {
+            SAVE_EVENTS.error(e);
+            throw e;
+        } finally {
+            SAVE_EVENTS.record(start);
+        }
+    }
+
+    public static ArrayList<Event> loadEvents() throws IOException {
+        long start = System.nanoTime();
+        try {
+            return readEvents();
+        } catch (FileNotFoundException e) {
+            System.out.println("Events file not found. Starting with empty database.");
+            return new ArrayList<>();
+        } catch (IOException e) {
+            LOAD_EVENTS.error(e);
+            throw damaged(EVENTS_FILE, e);
+        } finally {
+            LOAD_EVENTS.record(start);
+        }
+    }
+
+    public static void saveRegistrations(ArrayList<Registration> registrations) throws IOException {
+        long start = System.nanoTime();
+        try {
+            writeRecords(REGISTRATIONS_FILE, registrations, RecordCodec::formatRegistration);
+        } catch (IOException e) {
+            SAVE_REGISTRATIONS.error(e);
+            throw e;
+        } finally {
+            SAVE_REGISTRATIONS.record(start);
+        }
+    }
+
+    public static ArrayList<Registration> loadRegistrations() throws IOException {
+        long start = System.nanoTime();
+        try {
+            return readRegistrations();
+        } catch (FileNotFoundException e) {
+            System.out.println("Registrations file not found. Starting with empty database.");
+            return new ArrayList<>();
+        } catch (IOException e) {
+            LOAD_REGISTRATIONS.error(e);
+            throw damaged(REGISTRATIONS_FILE, e);
+        } finally {
+            LOAD_REGISTRATIONS.record(start);
+        }
+    }
+
+    // Snapshot (binary or CSV) plus journal replay: the full current state
+    public static void loadDatabase(ArrayList<Person> users, ArrayList<Event> events,
+                                    ArrayList<Registration> registrations) throws IOException {
+        long start = System.nanoTime();
+        JOURNAL.reset();
+        try {
+            loadedMapping = openCurrentMapping();
+            if (!loadBinarySnapshot(users, events, registrations)) {
+                users.addAll(loadUsers());
+                events.addAll(loadEvents());
+                if (loadedMapping == null) {
+                    registrations.addAll(loadRegistrations());
+                } else {
+                    // Same rows as registrations.txt: only those still in play are parsed onto the
+                    // heap, cancelled history stays in the mapping
+                    for (int i = 0; i < loadedMapping.size(); i++) {
+                        if (!loadedMapping.getStatus(i).equals("CANCELLED")) {
+                            registrations.add(loadedMapping.get(i));
+                        }
                     }
                 }
             }
+            replayJournal(users, events, registrations);
+        } finally {
+            LOAD_DATABASE.record(start);
+        }
+    }
+
+    // Writes the given state as the new snapshot and discards the journal it supersedes.
+    // The lists must already include everything in the journal (see loadDatabase). The journal
+    // is closed, the snapshot saved and the journal deleted under one hold of the lock, after
+    // any running compaction: a commit can neither land in the journal being deleted nor fold
+    // an older segment over the new snapshot. Commits queued meanwhile start a new journal.
+    public static void checkpoint(ArrayList<Person> users, ArrayList<Event> events,
+                                  ArrayList<Registration> registrations) throws IOException {
+        long start = System.nanoTime();
+        try {
+            JOURNAL.drain();
+            synchronized (FileHandler.class) {
+                awaitCompaction();
+                closeJournalWriter();
+                if (BINARY_SNAPSHOT) {
+                    BinarySnapshot.save(SNAPSHOT_FILE, users, events, registrations);
+                } else {
+                    saveUsers(users);
+                    saveEvents(events);
+                    saveRegistrations(registrations);
+                }
+                saveMappedRegistrations(registrations);
+                new File(COMPACTING_FILE).delete();
+                new File(JOURNAL_FILE).delete();
+                journalRecords = 0;
+            }
         } catch (IOException e) {
-            System.out.println("Users file not found. Starting with empty database.");
+            CHECKPOINT.error(e);
+            throw e;
+        } finally {
+            CHECKPOINT.record(start);
+        }
+    }
+
+    // Fills the lists from snapshot.bin; false when binary mode is off or there is no snapshot yet
+    public static boolean loadBinarySnapshot(ArrayList<Person> users, ArrayList<Event> events,
+                                             ArrayList<Registration> registrations) {
+        if (!BINARY_SNAPSHOT || !new File(SNAPSHOT_FILE).exists()) {
+            return false;
+        }
+        try {
+            BinarySnapshot snapshot = BinarySnapshot.load(SNAPSHOT_FILE);
+            users.addAll(snapshot.getUsers());
+            events.addAll(snapshot.getEvents());
+            registrations.addAll(snapshot.getRegistrations());
+            return true;
+        } catch (IOException e) {
+            System.err.println("Error loading snapshot, falling back to CSV: " + e.getMessage());
+            users.clear();
+            events.clear();
+            registrations.clear();
+            return false;
         }
-        return users;
     }
 
-    public static void saveEvents(ArrayList<Event> events) {
-        try (PrintWriter writer = new PrintWriter(new FileWriter(EVENTS_FILE))) {
-            for (Event event : events) {
-                writer.println(event.getEventId() + "," + event.getTitle() + "," +
-                        event.getDescription() + "," + event.getDate() + "," +
-                        event.getVenue() + "," + event.getCapacity() + "," +
-                        event.getRegisteredCount() + "," + event.getOrganizerId() + "," +
-                        event.getEventType());
+    // In mapped mode registrations.dat holds every registration of the snapshot. Checkpoints and
+    // compactions rewrite it (durably) right after the snapshot and stamp it with that snapshot
+    // file, and loadDatabase reuses it for as long as the stamp matches, so a start only writes it
+    // when there is none yet or the snapshot moved on without it. The caller keeps CANCELLED rows
+    // off the heap and reads them lazily from the mapping. Null when mapped mode is off.
+    public static MappedRegistrationFile openMappedRegistrations(ArrayList<Registration> registrations) {
+        if (!MAPPED_REGISTRATIONS) {
+            return null;
+        }
+        MappedRegistrationFile mapped = loadedMapping;
+        loadedMapping = null;
+        if (mapped != null) {
+            return mapped;
+        }
+        try {
+            boolean journaled = journalRecords > 0 || new File(COMPACTING_FILE).exists();
+            if (journaled) {
+                // The rows include journal changes, so they do not match the snapshot: stamp them
+                // as matching nothing and fold the journal, which writes a file that does
+                MappedRegistrationFile.write(REGISTRATIONS_DATA_FILE, registrations, -2, -2);
+                compactJournal();
+            } else {
+                saveMappedRegistrations(registrations);
             }
+            return MappedRegistrationFile.open(REGISTRATIONS_DATA_FILE);
         } catch (IOException e) {
-            System.err.println("Error saving events: " + e.getMessage());
+            System.err.println("Error mapping registrations, keeping them in memory: " + e.getMessage());
+            return null;
         }
     }
 
-    public static ArrayList<Event> loadEvents() {
-        ArrayList<Event> events = new ArrayList<>();
-        try (BufferedReader reader = new BufferedReader(new FileReader(EVENTS_FILE))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                String[] parts = line.split(",");
-                if (parts.length >= 9) {
-                    String eventId = parts[0], title = parts[1], description = parts[2],
-                            date = parts[3], venue = parts[4];
-                    int capacity = Integer.parseInt(parts[5]);
-                    int registeredCount = Integer.parseInt(parts[6]);
-                    String organizerId = parts[7], eventType = parts[8];
+    // Rewrites registrations.dat from a snapshot that was just saved
+    private static void saveMappedRegistrations(ArrayList<Registration> registrations) throws IOException {
+        if (MAPPED_REGISTRATIONS) {
+            long[] stamp = registrationSnapshotStamp();
+            MappedRegistrationFile.write(REGISTRATIONS_DATA_FILE, registrations, stamp[0], stamp[1]);
+        }
+    }
 
-                    Event event = null;
-                    switch (eventType) {
-                        case "CONFERENCE":
-                            event = new Conference(eventId, title, description, date, venue,
-                                    capacity, organizerId, 5); // Default speakers
-                            break;
-                        case "WORKSHOP":
-                            event = new Workshop(eventId, title, description, date, venue,
-                                    capacity, organizerId, 8); // Default duration
+    // registrations.dat if it was written from the current snapshot, otherwise null
+    private static MappedRegistrationFile openCurrentMapping() {
+        if (!MAPPED_REGISTRATIONS || !new File(REGISTRATIONS_DATA_FILE).exists()) {
+            return null;
+        }
+        try {
+            MappedRegistrationFile mapped = MappedRegistrationFile.open(REGISTRATIONS_DATA_FILE);
+            long[] stamp = registrationSnapshotStamp();
+            return mapped.isFrom(stamp[0], stamp[1]) ? mapped : null;
+        } catch (IOException e) {
+            return null; // older format or damaged; openMappedRegistrations writes a new one
+        }
+    }
+
+    // Size and modification time of the file the snapshot's registrations live in, -1s without one
+    private static long[] registrationSnapshotStamp() {
+        File file = new File(BINARY_SNAPSHOT ? SNAPSHOT_FILE : REGISTRATIONS_FILE);
+        return file.exists() ? new long[]{file.length(), file.lastModified()} : new long[]{-1, -1};
+    }
+
+    // Journal: one appended BATCH line per WriteBatch, each put carrying the whole record, replayed
+    // on top of the snapshot files. Appends go through a GroupCommit: appendJournal only queues
+    // the batch, awaitJournal waits until it is written (and fsynced in durable mode).
+    public static long appendJournal(WriteBatch batch) {
+        return batch.isEmpty() ? 0 : JOURNAL.append(batch);
+    }
+
+    public static void awaitJournal(long ticket) throws IOException {
+        JOURNAL.await(ticket);
+    }
+
+    // Commits a round of queued batches: one write, and one fsync in durable mode, for all of them
+    private static void writeJournal(List<WriteBatch> batches, List<String[]> values) throws IOException {
+        long start = System.nanoTime();
+        boolean compact;
+        try {
+            synchronized (FileHandler.class) {
+                if (journalWriter == null) {
+                    openJournal();
+                }
+                for (int i = 0; i < batches.size(); i++) {
+                    journalWriter.println(batches.get(i).encode(values.get(i)));
+                }
+                journalWriter.flush();
+                if (journalWriter.checkError()) {
+                    throw new IOException("write to " + JOURNAL_FILE + " failed");
+                }
+                if (DURABLE_JOURNAL) {
+                    journalStream.getChannel().force(false);
+                }
+                journalRecords += batches.size();
+                compact = journalRecords >= COMPACT_THRESHOLD;
+            }
+        } catch (IOException e) {
+            JOURNAL_APPEND.error(e);
+            throw e;
+        } finally {
+            JOURNAL_APPEND.record(start);
+        }
+        if (compact) {
+            compactJournal();
+        }
+    }
+
+    private static void openJournal() throws IOException {
+        boolean created = !new File(JOURNAL_FILE).exists();
+        if (!created) {
+            truncateTornTail(Paths.get(JOURNAL_FILE));
+        }
+        journalStream = new FileOutputStream(JOURNAL_FILE, true);
+        journalWriter = new PrintWriter(new BufferedWriter(
+                new OutputStreamWriter(journalStream, StandardCharsets.UTF_8)));
+        if (DURABLE_JOURNAL && created) {
+            syncDirectory(Paths.get(JOURNAL_FILE).toAbsolutePath().getParent());
+        }
+    }
+
+    // Caller holds the FileHandler lock. Each commit flushed (and in durable mode fsynced) its
+    // records before acknowledging them, so there is nothing left to force here.
+    private static void closeJournalWriter() {
+        if (journalWriter == null) {
+            return;
+        }
+        journalWriter.close();
+        journalWriter = null;
+        journalStream = null;
+    }
+
+    public static void replayJournal(ArrayList<Person> users, ArrayList<Event> events,
+                                     ArrayList<Registration> registrations) {
+        long start = System.nanoTime();
+        try {
+            // A leftover segment means the last compaction never finished
+            replay(COMPACTING_FILE, users, events, registrations);
+            journalRecords = replay(JOURNAL_FILE, users, events, registrations);
+        } catch (IOException e) {
+            JOURNAL_REPLAY.error(e);
+            System.err.println("Error replaying journal: " + e.getMessage());
+        } finally {
+            JOURNAL_REPLAY.record(start);
+        }
+        if (new File(COMPACTING_FILE).exists() || journalRecords >= COMPACT_THRESHOLD) {
+            compactJournal();
+        }
+    }
+
+    // Current state straight from the files, for keyed reads on the CSV engine. Holds the journal
+    // lock for the whole read (and waits out a running compaction), so it stalls writers.
+    public static void readState(ArrayList<Person> users, ArrayList<Event> events,
+                                 ArrayList<Registration> registrations) throws IOException {
+        JOURNAL.drain();
+        synchronized (FileHandler.class) {
+            awaitCompaction();
+            if (!loadBinarySnapshot(users, events, registrations)) {
+                users.addAll(readUsersIfPresent());
+                events.addAll(readEventsIfPresent());
+                registrations.addAll(readRegistrationsIfPresent());
+            }
+            replay(COMPACTING_FILE, users, events, registrations);
+            replay(JOURNAL_FILE, users, events, registrations);
+        }
+    }
+
+    // Caller holds the FileHandler lock
+    private static void awaitCompaction() throws InterruptedIOException {
+        while (compacting) {
+            try {
+                FileHandler.class.wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("interrupted waiting for compaction");
+            }
+        }
+    }
+
+    // Rotates the live journal and folds it into the snapshot files on a background thread
+    public static synchronized void compactJournal() {
+        if (compacting) {
+            return;
+        }
+        closeJournalWriter();
+        File segment = new File(COMPACTING_FILE);
+        File journal = new File(JOURNAL_FILE);
+        if (!segment.exists()) {
+            if (!journal.exists() || !journal.renameTo(segment)) {
+                return;
+            }
+        }
+        journalRecords = 0;
+        compacting = true;
+        if (compactor == null) {
+            compactor = Executors.newSingleThreadExecutor(r -> {
+                Thread t = new Thread(r, "journal-compactor");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+        compactor.submit(FileHandler::foldSegment);
+    }
+
+    private static void foldSegment() {
+        try {
+            ArrayList<Person> users = new ArrayList<>();
+            ArrayList<Event> events = new ArrayList<>();
+            ArrayList<Registration> registrations = new ArrayList<>();
+            if (!loadBinarySnapshot(users, events, registrations)) {
+                users = readUsersIfPresent();
+                events = readEventsIfPresent();
+                registrations = readRegistrationsIfPresent();
+            }
+            replay(COMPACTING_FILE, users, events, registrations);
+            if (BINARY_SNAPSHOT) {
+                BinarySnapshot.save(SNAPSHOT_FILE, users, events, registrations);
+            } else {
+                saveUsers(users);
+                saveEvents(events);
+                saveRegistrations(registrations);
+            }
+            saveMappedRegistrations(registrations);
+            new File(COMPACTING_FILE).delete();
+        } catch (IOException e) {
+            System.err.println("Error compacting journal: " + e.getMessage());
+        } finally {
+            synchronized (FileHandler.class) {
+                compacting = false;
+                FileHandler.class.notifyAll();
+            }
+        }
+    }
+
+    // Commits whatever is still queued
+    public static void flushJournal() {
+        try {
+            JOURNAL.drain();
+        } catch (IOException e) {
+            System.err.println("Error writing journal: " + e.getMessage());
+        }
+    }
+
+    public static void closeJournal() {
+        flushJournal();
+        ExecutorService pending;
+        synchronized (FileHandler.class) {
+            closeJournalWriter();
+            pending = compactor;
+            compactor = null;
+        }
+        if (pending != null) {
+            pending.shutdown();
+            try {
+                pending.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    // Replay is idempotent so a segment folded twice after a crash leaves the same state
+    private static int replay(String file, ArrayList<Person> users, ArrayList<Event> events,
+                              ArrayList<Registration> registrations) throws IOException {
+        if (!new File(file).exists()) {
+            return 0;
+        }
+        LinkedHashMap<String, Person> userById = new LinkedHashMap<>();
+        for (Person user : users) userById.put(user.getId(), user);
+        LinkedHashMap<String, Event> eventById = new LinkedHashMap<>();
+        for (Event event : events) eventById.put(event.getEventId(), event);
+        LinkedHashMap<String, Registration> regById = new LinkedHashMap<>();
+        for (Registration reg : registrations) regById.put(reg.getRegistrationId(), reg);
+
+        int count = 0;
+        try (RecordCodec.Reader reader = new RecordCodec.Reader(new FileInputStream(file))) {
+            while (reader.next()) {
+                if (!reader.isTerminated()) {
+                    break; // torn final append, never acknowledged
+                }
+                WriteBatch batch = "BATCH".equals(reader.field()) ? WriteBatch.decode(reader) : null;
+                if (batch == null) {
+                    continue; // malformed record
+                }
+                for (WriteBatch.Op o : batch.getOps()) {
+                    switch (o.getTable()) {
+                        case WriteBatch.USERS:
+                            if (o.isDelete()) userById.remove(o.getKey());
+                            else userById.put(o.getKey(), (Person) o.getValue());
                             break;
-                        case "CONCERT":
-                            event = new Concert(eventId, title, description, date, venue,
-                                    capacity, organizerId, "Unknown Artist");
+                        case WriteBatch.EVENTS:
+                            if (o.isDelete()) eventById.remove(o.getKey());
+                            else eventById.put(o.getKey(), (Event) o.getValue());
                             break;
+                        default:
+                            if (o.isDelete()) regById.remove(o.getKey());
+                            else regById.put(o.getKey(), (Registration) o.getValue());
                     }
+                }
+                count++;
+            }
+        }
 
-                    if (event != null) {
-                        for (int i = 0; i < registeredCount; i++) {
-                            event.incrementRegistration();
-                        }
-                        events.add(event);
+        users.clear();
+        users.addAll(userById.values());
+        events.clear();
+        events.addAll(eventById.values());
+        registrations.clear();
+        registrations.addAll(regById.values());
+        return count;
+    }
+
+    private static ArrayList<Person> readUsers() throws IOException {
+        return readRecords(USERS_FILE, RecordCodec::parseUser);
+    }
+
+    private static ArrayList<Event> readEvents() throws IOException {
+        return readRecords(EVENTS_FILE, RecordCodec::parseEvent);
+    }
+
+    private static ArrayList<Registration> readRegistrations() throws IOException {
+        return readRecords(REGISTRATIONS_FILE, RecordCodec::parseRegistration);
+    }
+
+    // Crash-safe replacement: the body writes <file>.tmp, which is forced to disk and then renamed
+    // over the file, so a crash at any point leaves either the old or the new version intact.
+    public interface FileBody {
+        void write(FileChannel channel) throws IOException;
+    }
+
+    public static void writeAtomically(String file, FileBody body) throws IOException {
+        Path target = Paths.get(file).toAbsolutePath();
+        Path temp = Paths.get(file + ".tmp").toAbsolutePath();
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            body.write(channel);
+            channel.force(true);
+        } catch (IOException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        syncDirectory(target.getParent());
+    }
+
+    // Makes a rename or a new file durable; not every platform can open a directory, which is fine
+    private static void syncDirectory(Path dir) {
+        try (FileChannel channel = FileChannel.open(dir, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // best effort
+        }
+    }
+
+    // Cuts a log back to its last complete line before appending to it again. Replay stops at a
+    // line torn by a crash, so a record appended straight after one would be glued to it and
+    // lost on the next replay.
+    public static void truncateTornTail(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long size = channel.size();
+            long end = size;
+            ByteBuffer chunk = ByteBuffer.allocate(8192);
+            while (end > 0) {
+                long start = Math.max(0, end - chunk.capacity());
+                chunk.clear();
+                chunk.limit((int) (end - start));
+                while (chunk.hasRemaining()) {
+                    if (channel.read(chunk, start + chunk.position()) < 0) {
+                        throw new EOFException(file + " shrank while being read");
                     }
                 }
+                int i = chunk.limit() - 1;
+                while (i >= 0 && chunk.get(i) != '\n') {
+                    i--;
+                }
+                if (i >= 0) {
+                    end = start + i + 1;
+                    break;
+                }
+                end = start;
+            }
+            if (end < size) {
+                channel.truncate(end);
             }
-        } catch (IOException e) {
-            System.out.println("Events file not found. Starting with empty database.");
         }
-        return events;
     }
 
-    public static void saveRegistrations(ArrayList<Registration> registrations) {
-        try (PrintWriter writer = new PrintWriter(new FileWriter(REGISTRATIONS_FILE))) {
-            for (Registration reg : registrations) {
-                writer.println(reg.getRegistrationId() + "," + reg.getUserId() + "," +
-                        reg.getEventId() + "," + reg.getRegistrationDate() + "," +
-                        reg.getStatus());
+    // One record per line with a checksum trailer, replacing the file atomically
+    public static <T> void writeRecords(String file, Iterable<T> records, Function<T, String> format)
+            throws IOException {
+        writeAtomically(file, channel -> {
+            CRC32 crc = new CRC32();
+            OutputStream raw = Channels.newOutputStream(channel);
+            Writer writer = new BufferedWriter(new OutputStreamWriter(
+                    new CheckedOutputStream(raw, crc), StandardCharsets.UTF_8), 1 << 16);
+            long count = 0;
+            for (T record : records) {
+                writer.write(format.apply(record));
+                writer.write('\n');
+                count++;
             }
-        } catch (IOException e) {
-            System.err.println("Error saving registrations: " + e.getMessage());
+            writer.flush();
+            raw.write((CHECKSUM_PREFIX + count + "," + Long.toHexString(crc.getValue()) + "\n")
+                    .getBytes(StandardCharsets.UTF_8));
+        });
+    }
+
+    // Call once the reader is exhausted; files without a trailer pass unverified
+    public static void verifyChecksum(String file, RecordCodec.Reader reader) throws IOException {
+        String trailer = reader.getTrailer();
+        if (trailer != null && !trailer.equals(CHECKSUM_PREFIX + reader.getLineCount() + ","
+                + Long.toHexString(reader.getChecksum()))) {
+            throw new IOException("checksum mismatch in " + file);
         }
     }
 
-    public static ArrayList<Registration> loadRegistrations() {
-        ArrayList<Registration> registrations = new ArrayList<>();
-        try (BufferedReader reader = new BufferedReader(new FileReader(REGISTRATIONS_FILE))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                String[] parts = line.split(",");
-                if (parts.length >= 5) {
-                    registrations.add(new Registration(parts[0], parts[1], parts[2], parts[3], parts[4]));
+    // Files without a trailer (older saves, hand edits) load unverified
+    private static <T> ArrayList<T> readRecords(String file, Function<RecordCodec.Reader, T> parse)
+            throws IOException {
+        ArrayList<T> records = new ArrayList<>();
+        try (RecordCodec.Reader reader = new RecordCodec.Reader(new FileInputStream(file))) {
+            while (reader.next()) {
+                T record = parse.apply(reader);
+                if (record != null) {
+                    records.add(record);
                 }
             }
+            verifyChecksum(file, reader);
+        }
+        return records;
+    }
+
+    private static String dataFile(String name) {
+        return DATA_DIR.isEmpty() ? name : Paths.get(DATA_DIR, name).toString();
+    }
+
+    // A snapshot file that fails to read or verify stops the load: carrying on with an empty
+    // table would let the next checkpoint or compaction save it over the only copy. The file is
+    // left in place, so every start fails until it is repaired or removed, and a copy is kept
+    // aside as file.corrupt in case it is removed.
+    private static IOException damaged(String file, IOException cause) {
+        Path aside = Paths.get(file + ".corrupt");
+        String kept;
+        try {
+            Files.copy(Paths.get(file), aside, StandardCopyOption.REPLACE_EXISTING);
+            kept = "; a copy was kept as " + aside;
         } catch (IOException e) {
-            System.out.println("Registrations file not found. Starting with empty database.");
+            kept = "";
         }
-        return registrations;
+        return new IOException(file + " is damaged (" + cause.getMessage() + ")" + kept
+                + ". Repair or remove " + file + " to start.", cause);
+    }
+
+    private static ArrayList<Person> readUsersIfPresent() throws IOException {
+        return new File(USERS_FILE).exists() ? readUsers() : new ArrayList<>();
+    }
+
+    private static ArrayList<Event> readEventsIfPresent() throws IOException {
+        return new File(EVENTS_FILE).exists() ? readEvents() : new ArrayList<>();
+    }
+
+    private static ArrayList<Registration> readRegistrationsIfPresent() throws IOException {
+        return new File(REGISTRATIONS_FILE).exists() ? readRegistrations() : new ArrayList<>();
     }
-}
\ No newline at end of file
+}
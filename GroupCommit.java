@@ -0,0 +1,120 @@
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+
+// Ordered commit queue in front of a log (the CSV journal, the LSM WAL). append() encodes the
+// batch and queues it behind every earlier batch without touching the disk, so callers can
+// append while holding their own locks and wait for durability after releasing them. await()
+// makes the first waiter to find no commit running the leader: it hands everything queued so far
+// to the sink in one call (one write, one fsync) on behalf of every waiter, and waiters arriving
+// meanwhile wait for that round or the next.
+// The first failed commit fails every batch queued after it too, and every later append, until
+// reset(): a log that failed to write or fsync may have lost records it already acknowledged.
+public class GroupCommit {
+    public interface Sink {
+        // values[i] holds the encoded values of batches.get(i); the batches are in append order
+        void write(List<WriteBatch> batches, List<String[]> values) throws IOException;
+    }
+
+    private final Sink sink;
+    private ArrayList<WriteBatch> pending = new ArrayList<>();
+    private ArrayList<String[]> pendingValues = new ArrayList<>();
+    private long appended;   // tickets handed out
+    private long committed;  // every ticket up to this one is in the log
+    private boolean committing;
+    private IOException failure;
+
+    public GroupCommit(Sink sink) {
+        this.sink = sink;
+    }
+
+    // The ticket to await; values are encoded now, so the log records the state as of this call
+    public synchronized long append(WriteBatch batch) {
+        if (failure == null) {
+            pending.add(batch);
+            pendingValues.add(batch.encodeValues());
+        }
+        return ++appended;
+    }
+
+    // Returns once the ticket's batch, and every batch appended before it, is in the log
+    public void await(long ticket) throws IOException {
+        List<WriteBatch> batches;
+        List<String[]> values;
+        long target;
+        synchronized (this) {
+            while (true) {
+                if (committed >= ticket) {
+                    return;
+                }
+                if (failure != null) {
+                    throw new IOException("log unavailable after an earlier failure: " + failure.getMessage(),
+                            failure);
+                }
+                if (!committing) {
+                    break;
+                }
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("interrupted waiting for commit");
+                }
+            }
+            committing = true;
+            batches = pending;
+            values = pendingValues;
+            target = appended;
+            pending = new ArrayList<>();
+            pendingValues = new ArrayList<>();
+        }
+        IOException error = null;
+        try {
+            if (!batches.isEmpty()) {
+                sink.write(batches, values);
+            }
+        } catch (IOException e) {
+            error = e;
+        } catch (RuntimeException e) {
+            error = new IOException(e);
+        }
+        synchronized (this) {
+            committing = false;
+            if (error == null) {
+                committed = target;
+            } else if (failure == null) {
+                failure = error;
+            }
+            notifyAll();
+        }
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    // Commits everything appended so far
+    public void drain() throws IOException {
+        long ticket;
+        synchronized (this) {
+            ticket = appended;
+        }
+        await(ticket);
+    }
+
+    // Marks the log failed from outside a commit, e.g. when closing it loses buffered records
+    public synchronized void fail(IOException e) {
+        if (failure == null) {
+            failure = e;
+        }
+        notifyAll();
+    }
+
+    // Forgets a failure once the log has been reloaded from disk; batches still queued are dropped
+    public synchronized void reset() {
+        failure = null;
+        pending = new ArrayList<>();
+        pendingValues = new ArrayList<>();
+        committed = appended;
+    }
+}
@@ -0,0 +1,3 @@
+public interface IdGenerator {
+    String nextId(String prefix);
+}
\ No newline at end of file
@@ -0,0 +1,99 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class IndexedRegistrationStore implements RegistrationStore {
+    private ConcurrentHashMap<String, Registration> registrations;
+    private RegistrationIndex index;
+
+    public IndexedRegistrationStore() {
+        registrations = new ConcurrentHashMap<>();
+        index = new RegistrationIndex();
+    }
+
+    @Override
+    public boolean claim(String userId, String eventId) {
+        return index.claim(userId, eventId);
+    }
+
+    @Override
+    public void release(String userId, String eventId) {
+        index.release(userId, eventId);
+    }
+
+    @Override
+    public boolean isActive(String userId, String eventId) {
+        return index.isActive(userId, eventId);
+    }
+
+    @Override
+    public void add(Registration reg) {
+        registrations.put(reg.getRegistrationId(), reg);
+        index.add(reg);
+    }
+
+    @Override
+    public Registration get(String registrationId) {
+        return registrations.get(registrationId);
+    }
+
+    @Override
+    public Registration remove(String registrationId) {
+        Registration reg = registrations.remove(registrationId);
+        if (reg != null) {
+            index.remove(reg);
+        }
+        return reg;
+    }
+
+    @Override
+    public ArrayList<Registration> removeAll(String eventId, List<String> registrationIds) {
+        ArrayList<Registration> removed = new ArrayList<>(registrationIds.size());
+        for (String registrationId : registrationIds) {
+            Registration reg = remove(registrationId);
+            if (reg != null) {
+                removed.add(reg);
+            }
+        }
+        return removed;
+    }
+
+    @Override
+    public void setStatus(String registrationId, String status) {
+        Registration reg = registrations.get(registrationId);
+        if (reg != null) {
+            String previous = reg.getStatus();
+            reg.setStatus(status);
+            index.statusChanged(reg, previous);
+        }
+    }
+
+    @Override
+    public ArrayList<Registration> removeEvent(String eventId) {
+        ArrayList<Registration> removed = index.removeEvent(eventId);
+        for (Registration reg : removed) {
+            registrations.remove(reg.getRegistrationId());
+        }
+        return removed;
+    }
+
+    @Override
+    public List<Registration> getByUser(String userId) {
+        return index.getByUser(userId);
+    }
+
+    @Override
+    public List<Registration> getByEvent(String eventId) {
+        return index.getByEvent(eventId);
+    }
+
+    @Override
+    public ArrayList<Registration> getAll() {
+        return new ArrayList<>(registrations.values());
+    }
+
+    @Override
+    public int size() {
+        return registrations.size();
+    }
+}
\ No newline at end of file
@@ -0,0 +1,178 @@
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+// Per-operation counts, error counts by exception type and latency histograms for the hot paths.
+// Call sites hold their Operation in a static field and time with System.nanoTime(), so a
+// successful call records without allocating:
+//
+//   long start = System.nanoTime();
+//   try { ... } catch (Exception e) { OP.error(e); throw e; } finally { OP.record(start); }
+//
+// Every operation is also an MXBean (ems:type=Operation,name=<op>), and with
+// -Dems.metricsDump=<file|-> the Prometheus text format is rewritten every
+// -Dems.metricsDumpSeconds (default 10). The API serves the same text at GET /metrics.
+public class Instrumentation {
+    private static final ConcurrentHashMap<String, Operation> OPERATIONS = new ConcurrentHashMap<>();
+    private static ScheduledExecutorService dumper;
+
+    static {
+        String dumpTarget = System.getProperty("ems.metricsDump");
+        if (dumpTarget != null) {
+            startDump(dumpTarget, Long.getLong("ems.metricsDumpSeconds", 10));
+        }
+    }
+
+    public interface OperationMXBean {
+        long getCount();
+        long getErrorCount();
+        Map<String, Long> getErrorsByType();
+        double getMeanMicros();
+        double getP50Micros();
+        double getP90Micros();
+        double getP99Micros();
+        double getP999Micros();
+        double getMaxMicros();
+    }
+
+    public static class Operation implements OperationMXBean {
+        private final String name;
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final ConcurrentHashMap<String, LongAdder> errors = new ConcurrentHashMap<>();
+        private final LongAdder errorCount = new LongAdder();
+
+        private Operation(String name) {
+            this.name = name;
+        }
+
+        public String getName() { return name; }
+
+        public void record(long startNanos) {
+            latency.record(System.nanoTime() - startNanos);
+        }
+
+        public void error(Throwable e) {
+            errorCount.increment();
+            errors.computeIfAbsent(e.getClass().getSimpleName(), k -> new LongAdder()).increment();
+        }
+
+        public LatencyHistogram getLatency() { return latency; }
+        public long getCount() { return latency.getCount(); }
+        public long getErrorCount() { return errorCount.sum(); }
+
+        public Map<String, Long> getErrorsByType() {
+            TreeMap<String, Long> result = new TreeMap<>();
+            errors.forEach((type, count) -> result.put(type, count.sum()));
+            return result;
+        }
+
+        public double getMeanMicros() { return latency.getMean() / 1e3; }
+        public double getP50Micros() { return latency.percentile(0.50) / 1e3; }
+        public double getP90Micros() { return latency.percentile(0.90) / 1e3; }
+        public double getP99Micros() { return latency.percentile(0.99) / 1e3; }
+        public double getP999Micros() { return latency.percentile(0.999) / 1e3; }
+        public double getMaxMicros() { return latency.getMax() / 1e3; }
+    }
+
+    public static Operation operation(String name) {
+        return OPERATIONS.computeIfAbsent(name, Instrumentation::register);
+    }
+
+    public static Collection<Operation> operations() {
+        return new TreeMap<>(OPERATIONS).values();
+    }
+
+    private static Operation register(String name) {
+        Operation op = new Operation(name);
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = new ObjectName("ems:type=Operation,name=" + ObjectName.quote(name));
+            if (!server.isRegistered(objectName)) {
+                server.registerMBean(op, objectName);
+            }
+        } catch (JMException e) {
+            System.err.println("Error registering MBean for " + name + ": " + e.getMessage());
+        }
+        return op;
+    }
+
+    // Prometheus text exposition: a latency summary and an error counter per operation
+    public static String prometheus() {
+        StringWriter text = new StringWriter();
+        PrintWriter out = new PrintWriter(text);
+        ArrayList<Operation> ops = new ArrayList<>(operations());
+        out.println("# HELP ems_operation_duration_seconds Latency of core operations.");
+        out.println("# TYPE ems_operation_duration_seconds summary");
+        double[] quantiles = {0.5, 0.9, 0.99, 0.999};
+        for (Operation op : ops) {
+            LatencyHistogram h = op.latency;
+            for (double q : quantiles) {
+                out.printf(Locale.ROOT, "ems_operation_duration_seconds{op=\"%s\",quantile=\"%s\"} %.9f%n",
+                        op.name, q, h.percentile(q) / 1e9);
+            }
+            out.printf(Locale.ROOT, "ems_operation_duration_seconds_sum{op=\"%s\"} %.9f%n", op.name, h.getSum() / 1e9);
+            out.printf(Locale.ROOT, "ems_operation_duration_seconds_count{op=\"%s\"} %d%n", op.name, h.getCount());
+        }
+        out.println("# HELP ems_operation_errors_total Failed core operations by exception type.");
+        out.println("# TYPE ems_operation_errors_total counter");
+        for (Operation op : ops) {
+            for (Map.Entry<String, Long> error : op.getErrorsByType().entrySet()) {
+                out.printf(Locale.ROOT, "ems_operation_errors_total{op=\"%s\",exception=\"%s\"} %d%n",
+                        op.name, error.getKey(), error.getValue());
+            }
+        }
+        out.flush();
+        return text.toString();
+    }
+
+    // "-" dumps to stdout; a file is replaced atomically so a scraper never reads half a dump
+    public static synchronized void startDump(String target, long periodSeconds) {
+        if (dumper != null) {
+            return;
+        }
+        dumper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "metrics-dump");
+            t.setDaemon(true);
+            return t;
+        });
+        dumper.scheduleAtFixedRate(() -> {
+            try {
+                dump(target);
+            } catch (IOException e) {
+                System.err.println("Error writing metrics: " + e.getMessage());
+            }
+        }, periodSeconds, periodSeconds, TimeUnit.SECONDS);
+    }
+
+    public static void dump(String target) throws IOException {
+        String text = prometheus();
+        if (target.equals("-")) {
+            System.out.print(text);
+            System.out.flush();
+            return;
+        }
+        Path path = Paths.get(target);
+        Path temp = Paths.get(target + ".tmp");
+        Files.write(temp, text.getBytes(StandardCharsets.UTF_8));
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
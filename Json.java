@@ -0,0 +1,183 @@
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Just enough JSON: flat objects in (one JSONL line or request body at a time),
+// maps, collections, strings, numbers and booleans out
+public class Json {
+    public static String toJson(Object value) {
+        StringBuilder sb = new StringBuilder();
+        write(sb, value);
+        return sb.toString();
+    }
+
+    // Already-serialized JSON, written as is (cached renderings)
+    public static class Raw {
+        private final String json;
+
+        public Raw(String json) {
+            this.json = json;
+        }
+    }
+
+    private static void write(StringBuilder sb, Object value) {
+        if (value == null) {
+            sb.append("null");
+        } else if (value instanceof Raw) {
+            sb.append(((Raw) value).json);
+        } else if (value instanceof Number || value instanceof Boolean) {
+            sb.append(value);
+        } else if (value instanceof Map) {
+            sb.append('{');
+            boolean first = true;
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                if (!first) sb.append(',');
+                first = false;
+                quote(sb, String.valueOf(entry.getKey()));
+                sb.append(':');
+                write(sb, entry.getValue());
+            }
+            sb.append('}');
+        } else if (value instanceof Collection) {
+            sb.append('[');
+            boolean first = true;
+            for (Object item : (Collection<?>) value) {
+                if (!first) sb.append(',');
+                first = false;
+                write(sb, item);
+            }
+            sb.append(']');
+        } else {
+            quote(sb, value.toString());
+        }
+    }
+
+    private static void quote(StringBuilder sb, String s) {
+        sb.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"': sb.append("\\\""); break;
+                case '\\': sb.append("\\\\"); break;
+                case '\n': sb.append("\\n"); break;
+                case '\r': sb.append("\\r"); break;
+                case '\t': sb.append("\\t"); break;
+                default:
+                    if (c < 0x20) {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+            }
+        }
+        sb.append('"');
+    }
+
+    public static LinkedHashMap<String, String> parseObject(String text) {
+        LinkedHashMap<String, String> fields = new LinkedHashMap<>();
+        int[] pos = {skipSpace(text, 0)};
+        expect(text, pos, '{');
+        if (peek(text, pos) == '}') {
+            pos[0]++;
+            return fields;
+        }
+        while (true) {
+            String key = readString(text, pos);
+            expect(text, pos, ':');
+            pos[0] = skipSpace(text, pos[0]);
+            String value = peek(text, pos) == '"' ? readString(text, pos) : readLiteral(text, pos);
+            fields.put(key, value);
+            char next = peek(text, pos);
+            pos[0]++;
+            if (next == '}') {
+                break;
+            }
+            if (next != ',') {
+                throw new IllegalArgumentException("Expected ',' or '}' at " + (pos[0] - 1));
+            }
+        }
+        if (skipSpace(text, pos[0]) != text.length()) {
+            throw new IllegalArgumentException("Trailing characters after object");
+        }
+        return fields;
+    }
+
+    private static String readString(String text, int[] pos) {
+        expect(text, pos, '"');
+        StringBuilder sb = null;
+        int start = pos[0];
+        int i = start;
+        while (i < text.length()) {
+            char c = text.charAt(i);
+            if (c == '"') {
+                pos[0] = i + 1;
+                return sb == null ? text.substring(start, i) : sb.toString();
+            }
+            if (c == '\\') {
+                if (sb == null) {
+                    sb = new StringBuilder(text.substring(start, i));
+                }
+                if (i + 1 >= text.length()) {
+                    break;
+                }
+                char e = text.charAt(++i);
+                switch (e) {
+                    case 'n': sb.append('\n'); break;
+                    case 't': sb.append('\t'); break;
+                    case 'r': sb.append('\r'); break;
+                    case 'b': sb.append('\b'); break;
+                    case 'f': sb.append('\f'); break;
+                    case 'u':
+                        if (i + 4 >= text.length()) {
+                            throw new IllegalArgumentException("Bad unicode escape at " + i);
+                        }
+                        sb.append((char) Integer.parseInt(text.substring(i + 1, i + 5), 16));
+                        i += 4;
+                        break;
+                    default: sb.append(e);
+                }
+            } else if (sb != null) {
+                sb.append(c);
+            }
+            i++;
+        }
+        throw new IllegalArgumentException("Unterminated string");
+    }
+
+    private static String readLiteral(String text, int[] pos) {
+        int start = pos[0];
+        int i = start;
+        while (i < text.length() && ",}] \t".indexOf(text.charAt(i)) < 0) {
+            i++;
+        }
+        if (i == start) {
+            throw new IllegalArgumentException("Missing value at " + start);
+        }
+        pos[0] = i;
+        String literal = text.substring(start, i);
+        return literal.equals("null") ? null : literal;
+    }
+
+    private static void expect(String text, int[] pos, char c) {
+        pos[0] = skipSpace(text, pos[0]);
+        if (pos[0] >= text.length() || text.charAt(pos[0]) != c) {
+            throw new IllegalArgumentException("Expected '" + c + "' at " + pos[0]);
+        }
+        pos[0]++;
+    }
+
+    private static char peek(String text, int[] pos) {
+        pos[0] = skipSpace(text, pos[0]);
+        if (pos[0] >= text.length()) {
+            throw new IllegalArgumentException("Unexpected end of input");
+        }
+        return text.charAt(pos[0]);
+    }
+
+    private static int skipSpace(String text, int i) {
+        while (i < text.length() && Character.isWhitespace(text.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,934 @@
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+// Embedded log-structured store in one directory, for data sets that outgrow memory:
+//   wal-N.log  every batch, appended before it is applied (the journal's BATCH lines)
+//   run-N.dat  immutable sorted runs of "<key>,<sequence>,<record>" lines, where the key is the
+//              table letter plus the ID and a key with no sequence and record is a delete;
+//              checksum trailer as in the data files
+//   MANIFEST   "WAL,<N>,<next sequence>" then the live runs, newest first, replaced atomically
+// A key keeps the sequence number of its first put until it is deleted, and load returns each
+// table in sequence order: creation order, which the waitlists and organizer views depend on.
+// Sequences are not logged; replaying the WAL from the manifest's next sequence assigns the
+// same order again.
+// Writes go to the WAL and a sorted memtable; a full memtable becomes a new run and writes move
+// to a new, empty WAL, which only takes over once the manifest names it, so a crash keeps
+// either the old runs with the old WAL or the new runs with the new one. Reads try the
+// memtable, then the runs newest first, skipping runs whose bloom
+// filter rules the key out and seeking with a sparse index of every 64th key. Once there are
+// more than MAX_RUNS runs a background thread merges them into one, dropping overwritten
+// versions and deletes.
+public class LsmStorageEngine implements StorageEngine {
+    private static final int INDEX_INTERVAL = 64;
+    private static final int MAX_RUNS = 4;
+    private static final int BLOOM_BITS_PER_KEY = 10;
+    private static final int BLOOM_HASHES = 4;
+    // Entries held in memory before a flush: -Dems.lsmMemtable=N
+    private static final int MEMTABLE_LIMIT = Integer.getInteger("ems.lsmMemtable", 100_000);
+    // Same switch as the CSV journal: fsync the WAL on every batch
+    private static final boolean DURABLE = Boolean.getBoolean("ems.durableJournal");
+    private static final String MANIFEST_FILE = "MANIFEST";
+    private static final String DELETED = "";
+
+    private static final Instrumentation.Operation WRITE = Instrumentation.operation("lsm.write");
+    private static final Instrumentation.Operation GET = Instrumentation.operation("lsm.get");
+    private static final Instrumentation.Operation SCAN = Instrumentation.operation("lsm.scan");
+    private static final Instrumentation.Operation FLUSH = Instrumentation.operation("lsm.flush");
+    private static final Instrumentation.Operation COMPACT = Instrumentation.operation("lsm.compact");
+
+    // Readers take one snapshot of this and never lock; writers replace it whole
+    private static class State {
+        final ConcurrentSkipListMap<String, String> memtable;
+        final List<Run> runs;
+
+        State(ConcurrentSkipListMap<String, String> memtable, List<Run> runs) {
+            this.memtable = memtable;
+            this.runs = Collections.unmodifiableList(runs);
+        }
+    }
+
+    private final Path dir;
+    private final Object writeLock = new Object();
+    private volatile State state;
+    private FileOutputStream walStream;
+    private PrintWriter wal;
+    private int memtableEntries;
+    private long nextRun;
+    private long walGeneration;
+    private long nextSequence;
+    private boolean compacting;
+    private final GroupCommit commits = new GroupCommit(this::writeWal);
+    private final ExecutorService compactor;
+
+    public LsmStorageEngine(String directory) throws IOException {
+        dir = Paths.get(directory).toAbsolutePath();
+        Files.createDirectories(dir);
+        ArrayList<Run> runs = new ArrayList<>();
+        File manifest = dir.resolve(MANIFEST_FILE).toFile();
+        if (manifest.exists()) {
+            try (RecordCodec.Reader reader = new RecordCodec.Reader(new FileInputStream(manifest))) {
+                while (reader.next()) {
+                    String name = reader.field();
+                    if (name.equals("WAL")) {
+                        walGeneration = Long.parseLong(reader.field());
+                        nextSequence = Long.parseLong(reader.field());
+                    } else {
+                        runs.add(Run.open(dir.resolve(name), runNumber(name)));
+                    }
+                }
+                FileHandler.verifyChecksum(manifest.getPath(), reader);
+            }
+        }
+        for (Run run : runs) {
+            nextRun = Math.max(nextRun, run.number + 1);
+        }
+        // Runs and WALs left behind by a flush, merge or rotation that never reached the manifest
+        File[] files = dir.toFile().listFiles();
+        if (files != null) {
+            for (File file : files) {
+                String name = file.getName();
+                if (name.startsWith("run-") && name.endsWith(".dat") && !isLive(runs, name)
+                        || name.startsWith("wal-") && name.endsWith(".log") && !name.equals(walName(walGeneration))) {
+                    file.delete();
+                }
+            }
+        }
+
+        ConcurrentSkipListMap<String, String> memtable = new ConcurrentSkipListMap<>();
+        File walFile = dir.resolve(walName(walGeneration)).toFile();
+        if (walFile.exists()) {
+            try (RecordCodec.Reader reader = new RecordCodec.Reader(new FileInputStream(walFile))) {
+                while (reader.next() && reader.isTerminated()) {
+                    if (!"BATCH".equals(reader.field())) {
+                        continue;
+                    }
+                    WriteBatch batch = WriteBatch.decode(reader);
+                    if (batch != null) {
+                        apply(memtable, batch, store(batch, batch.encodeValues(), new HashMap<>(), memtable, runs));
+                    }
+                }
+            }
+        }
+        memtableEntries = memtable.size();
+        state = new State(memtable, runs);
+        openWal();
+
+        compactor = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "lsm-compactor");
+            t.setDaemon(true);
+            return t;
+        });
+        if (runs.size() > MAX_RUNS) {
+            scheduleCompaction();
+        }
+    }
+
+    // Each table in creation order, not key order
+    @SuppressWarnings("unchecked")
+    public void load(ArrayList<Person> users, ArrayList<Event> events, ArrayList<Registration> registrations)
+            throws IOException {
+        users.addAll((List<Person>) (List<?>) loadTable(WriteBatch.USERS));
+        events.addAll((List<Event>) (List<?>) loadTable(WriteBatch.EVENTS));
+        registrations.addAll((List<Registration>) (List<?>) loadTable(WriteBatch.REGISTRATIONS));
+    }
+
+    public Person getUser(String userId) throws IOException {
+        return (Person) get(WriteBatch.USERS, userId);
+    }
+
+    public Event getEvent(String eventId) throws IOException {
+        return (Event) get(WriteBatch.EVENTS, eventId);
+    }
+
+    public Registration getRegistration(String registrationId) throws IOException {
+        return (Registration) get(WriteBatch.REGISTRATIONS, registrationId);
+    }
+
+    @SuppressWarnings("unchecked")
+    public List<Person> scanUsers(String fromKey, String toKey, int limit) throws IOException {
+        return (List<Person>) (List<?>) scan(WriteBatch.USERS, fromKey, toKey, limit);
+    }
+
+    @SuppressWarnings("unchecked")
+    public List<Event> scanEvents(String fromKey, String toKey, int limit) throws IOException {
+        return (List<Event>) (List<?>) scan(WriteBatch.EVENTS, fromKey, toKey, limit);
+    }
+
+    @SuppressWarnings("unchecked")
+    public List<Registration> scanRegistrations(String fromKey, String toKey, int limit) throws IOException {
+        return (List<Registration>) (List<?>) scan(WriteBatch.REGISTRATIONS, fromKey, toKey, limit);
+    }
+
+    public long append(WriteBatch batch) {
+        return batch.isEmpty() ? 0 : commits.append(batch);
+    }
+
+    public void await(long ticket) throws IOException {
+        commits.await(ticket);
+    }
+
+    // Commits a round of queued batches: WAL first (one write, one fsync in durable mode), then
+    // the memtable. Sequences are looked up before the WAL write, so a failed lookup leaves
+    // nothing logged.
+    private void writeWal(List<WriteBatch> batches, List<String[]> values) throws IOException {
+        long start = System.nanoTime();
+        try {
+            synchronized (writeLock) {
+                State current = state;
+                HashMap<String, String> round = new HashMap<>();
+                ArrayList<String[]> stored = new ArrayList<>(batches.size());
+                for (int i = 0; i < batches.size(); i++) {
+                    stored.add(store(batches.get(i), values.get(i), round, current.memtable, current.runs));
+                }
+                for (int i = 0; i < batches.size(); i++) {
+                    wal.println(batches.get(i).encode(values.get(i)));
+                }
+                wal.flush();
+                if (wal.checkError()) {
+                    throw new IOException("write to " + walName(walGeneration) + " failed");
+                }
+                if (DURABLE) {
+                    walStream.getChannel().force(false);
+                }
+                for (int i = 0; i < batches.size(); i++) {
+                    apply(current.memtable, batches.get(i), stored.get(i));
+                    memtableEntries += values.get(i).length;
+                }
+                if (memtableEntries >= MEMTABLE_LIMIT) {
+                    // The batches are already in the WAL, so a failed flush leaves them there for
+                    // the next flush (or recovery) instead of failing the commit
+                    try {
+                        flushMemtable();
+                    } catch (IOException e) {
+                        FLUSH.error(e);
+                        System.err.println("Error flushing storage: " + e.getMessage());
+                    }
+                }
+            }
+        } catch (IOException e) {
+            WRITE.error(e);
+            throw e;
+        } finally {
+            WRITE.record(start);
+        }
+    }
+
+    public void replaceAll(ArrayList<Person> users, ArrayList<Event> events, ArrayList<Registration> registrations)
+            throws IOException {
+        // Sequences follow the order of the lists
+        long sequence = 0;
+        ArrayList<String[]> entries = new ArrayList<>(users.size() + events.size() + registrations.size());
+        for (Person user : users) {
+            entries.add(new String[]{WriteBatch.USERS + user.getId(), sequence++ + "," + RecordCodec.formatUser(user)});
+        }
+        for (Event event : events) {
+            entries.add(new String[]{WriteBatch.EVENTS + event.getEventId(),
+                    sequence++ + "," + RecordCodec.formatEvent(event)});
+        }
+        for (Registration reg : registrations) {
+            entries.add(new String[]{WriteBatch.REGISTRATIONS + reg.getRegistrationId(),
+                    sequence++ + "," + RecordCodec.formatRegistration(reg)});
+        }
+        entries.sort((a, b) -> a[0].compareTo(b[0]));
+        commits.drain();
+
+        List<Run> old;
+        synchronized (writeLock) {
+            Run run = writeRun(entries, nextRun++);
+            old = state.runs;
+            ArrayList<Run> runs = new ArrayList<>();
+            runs.add(run);
+            rotateWal(runs, sequence);
+            nextSequence = sequence;
+            state = new State(new ConcurrentSkipListMap<>(), runs);
+            memtableEntries = 0;
+        }
+        for (Run run : old) {
+            run.delete();
+        }
+    }
+
+    // Commits whatever is still queued
+    public void flush() {
+        try {
+            commits.drain();
+        } catch (IOException e) {
+            System.err.println("Error writing storage: " + e.getMessage());
+        }
+    }
+
+    public void close() {
+        flush();
+        compactor.shutdown();
+        try {
+            compactor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (writeLock) {
+            if (wal != null) {
+                wal.close();
+                wal = null;
+            }
+            for (Run run : state.runs) {
+                run.close();
+            }
+        }
+    }
+
+    private Object get(char table, String id) throws IOException {
+        long start = System.nanoTime();
+        String key = table + id;
+        try {
+            while (true) {
+                State current = state;
+                String value = current.memtable.get(key);
+                if (value != null) {
+                    return value.isEmpty() ? null : parse(table, value);
+                }
+                try {
+                    for (Run run : current.runs) {
+                        Object found = run.find(key, table);
+                        if (found == DELETED) {
+                            return null;
+                        }
+                        if (found != null) {
+                            return found;
+                        }
+                    }
+                    return null;
+                } catch (ClosedChannelException e) {
+                    // A merge retired one of these runs mid-read; the next snapshot has its replacement
+                    if (state == current) {
+                        throw e;
+                    }
+                }
+            }
+        } catch (IOException e) {
+            GET.error(e);
+            throw e;
+        } finally {
+            GET.record(start);
+        }
+    }
+
+    private List<Object> scan(char table, String fromKey, String toKey, int limit) throws IOException {
+        return scan(table, fromKey, toKey, limit, false);
+    }
+
+    // The whole table in sequence order
+    private List<Object> loadTable(char table) throws IOException {
+        List<Object> values = scan(table, null, null, Integer.MAX_VALUE, true);
+        values.sort(Comparator.comparingLong(value -> sequenceOf((String) value)));
+        for (int i = 0; i < values.size(); i++) {
+            values.set(i, parse(table, (String) values.get(i)));
+        }
+        return values;
+    }
+
+    // Entities, or their stored values when raw
+    private List<Object> scan(char table, String fromKey, String toKey, int limit, boolean raw) throws IOException {
+        long start = System.nanoTime();
+        String lo = table + (fromKey == null ? "" : fromKey);
+        String hi = toKey == null ? String.valueOf((char) (table + 1)) : table + toKey;
+        try {
+            while (true) {
+                State current = state;
+                try {
+                    ArrayList<Object> result = new ArrayList<>();
+                    try (Merge merge = new Merge(current, lo, hi)) {
+                        while (result.size() < limit && merge.next()) {
+                            if (!merge.isDeleted()) {
+                                result.add(raw ? merge.value() : merge.decode(table));
+                            }
+                        }
+                    }
+                    return result;
+                } catch (FileNotFoundException | NoSuchFileException e) {
+                    if (state == current) {
+                        throw e;
+                    }
+                }
+            }
+        } catch (IOException e) {
+            SCAN.error(e);
+            throw e;
+        } finally {
+            SCAN.record(start);
+        }
+    }
+
+    // Caller holds writeLock (or is the constructor). The values to store for the batch's ops:
+    // "<sequence>,<record>" for a put, DELETED for a delete. round holds what earlier batches of
+    // the same commit store, since they are not in the memtable yet.
+    private String[] store(WriteBatch batch, String[] values, Map<String, String> round,
+                           ConcurrentSkipListMap<String, String> memtable, List<Run> runs) throws IOException {
+        List<WriteBatch.Op> ops = batch.getOps();
+        String[] stored = new String[values.length];
+        for (int i = 0; i < values.length; i++) {
+            WriteBatch.Op op = ops.get(i);
+            String key = op.getTable() + op.getKey();
+            if (op.isDelete()) {
+                stored[i] = DELETED;
+            } else {
+                long sequence = storedSequence(key, round, memtable, runs);
+                stored[i] = (sequence < 0 ? nextSequence++ : sequence) + "," + values[i];
+            }
+            round.put(key, stored[i]);
+        }
+        return stored;
+    }
+
+    // The key's current sequence, or -1 when it is absent or deleted
+    private static long storedSequence(String key, Map<String, String> round,
+                                       ConcurrentSkipListMap<String, String> memtable, List<Run> runs)
+            throws IOException {
+        String value = round.get(key);
+        if (value == null) {
+            value = memtable.get(key);
+        }
+        for (int i = 0; value == null && i < runs.size(); i++) {
+            value = runs.get(i).value(key);
+        }
+        return value == null || value.isEmpty() ? -1 : sequenceOf(value);
+    }
+
+    private static long sequenceOf(String value) {
+        return Long.parseLong(value.substring(0, value.indexOf(',')));
+    }
+
+    private static void apply(ConcurrentSkipListMap<String, String> memtable, WriteBatch batch, String[] stored) {
+        List<WriteBatch.Op> ops = batch.getOps();
+        for (int i = 0; i < stored.length; i++) {
+            WriteBatch.Op op = ops.get(i);
+            memtable.put(op.getTable() + op.getKey(), stored[i]);
+        }
+    }
+
+    // Caller holds writeLock
+    private void flushMemtable() throws IOException {
+        long start = System.nanoTime();
+        try {
+            State current = state;
+            ArrayList<String[]> entries = new ArrayList<>(current.memtable.size());
+            for (Map.Entry<String, String> entry : current.memtable.entrySet()) {
+                entries.add(new String[]{entry.getKey(), entry.getValue()});
+            }
+            ArrayList<Run> runs = new ArrayList<>();
+            runs.add(writeRun(entries, nextRun++));
+            runs.addAll(current.runs);
+            rotateWal(runs, nextSequence);
+            state = new State(new ConcurrentSkipListMap<>(), runs);
+            memtableEntries = 0;
+            if (runs.size() > MAX_RUNS) {
+                scheduleCompaction();
+            }
+        } finally {
+            FLUSH.record(start);
+        }
+    }
+
+    // Caller holds writeLock
+    private void scheduleCompaction() {
+        if (!compacting && !compactor.isShutdown()) {
+            compacting = true;
+            compactor.submit(this::compact);
+        }
+    }
+
+    // Merges every run present at the start; runs flushed meanwhile are newer and stay in front.
+    // The merge includes the oldest run, so deletes have nothing left to hide and are dropped.
+    private void compact() {
+        long start = System.nanoTime();
+        List<Run> inputs = state.runs;
+        try {
+            long number;
+            synchronized (writeLock) {
+                number = nextRun++;
+            }
+            String lo = "";
+            String hi = String.valueOf(Character.MAX_VALUE);
+            ArrayList<String[]> entries = new ArrayList<>();
+            try (Merge merge = new Merge(new State(new ConcurrentSkipListMap<>(), new ArrayList<>(inputs)), lo, hi)) {
+                while (merge.next()) {
+                    if (!merge.isDeleted()) {
+                        entries.add(new String[]{merge.key(), merge.value()});
+                    }
+                }
+            }
+            Run merged = writeRun(entries, number);
+            synchronized (writeLock) {
+                State current = state;
+                if (!current.runs.containsAll(inputs)) {
+                    merged.delete(); // replaceAll swapped the data out from under the merge
+                    return;
+                }
+                ArrayList<Run> runs = new ArrayList<>();
+                for (Run run : current.runs) {
+                    if (!inputs.contains(run)) {
+                        runs.add(run);
+                    }
+                }
+                runs.add(merged);
+                writeManifest(runs, walGeneration, nextSequence);
+                state = new State(current.memtable, runs);
+            }
+            for (Run run : inputs) {
+                run.delete();
+            }
+        } catch (IOException e) {
+            // Inputs deleted by replaceAll mid-merge are not an error
+            if (state.runs.containsAll(inputs)) {
+                COMPACT.error(e);
+                System.err.println("Error compacting storage: " + e.getMessage());
+            }
+        } finally {
+            synchronized (writeLock) {
+                compacting = false;
+                if (state.runs.size() > MAX_RUNS) {
+                    scheduleCompaction();
+                }
+            }
+            COMPACT.record(start);
+        }
+    }
+
+    private Run writeRun(List<String[]> entries, long number) throws IOException {
+        Path path = dir.resolve(runName(number));
+        StringBuilder line = new StringBuilder(128);
+        FileHandler.writeRecords(path.toString(), entries, entry -> {
+            line.setLength(0);
+            RecordCodec.escape(line, entry[0]);
+            if (!entry[1].isEmpty()) {
+                line.append(',').append(entry[1]);
+            }
+            return line.toString();
+        });
+        return Run.open(path, number);
+    }
+
+    // Any sequence at or above the next one is a valid replay start, so a merge may record a
+    // later one than the WAL started from
+    private void writeManifest(List<Run> runs, long generation, long sequence) throws IOException {
+        ArrayList<String> lines = new ArrayList<>();
+        StringBuilder wal = new StringBuilder("WAL");
+        RecordCodec.append(wal, Long.toString(generation));
+        RecordCodec.append(wal, Long.toString(sequence));
+        lines.add(wal.toString());
+        for (Run run : runs) {
+            lines.add(run.path.getFileName().toString());
+        }
+        FileHandler.writeRecords(dir.resolve(MANIFEST_FILE).toString(), lines, line -> line);
+    }
+
+    // Caller holds writeLock. Moves writes to a new, empty WAL for the given runs; the old WAL
+    // stays the one replayed until the manifest names the new one.
+    private void rotateWal(List<Run> runs, long sequence) throws IOException {
+        long generation = walGeneration + 1;
+        Path next = dir.resolve(walName(generation));
+        FileOutputStream stream = new FileOutputStream(next.toFile(), false);
+        try {
+            writeManifest(runs, generation, sequence);
+        } catch (IOException e) {
+            stream.close();
+            Files.deleteIfExists(next);
+            throw e;
+        }
+        Path previous = dir.resolve(walName(walGeneration));
+        wal.close();
+        walStream = stream;
+        wal = new PrintWriter(new BufferedWriter(new OutputStreamWriter(walStream, StandardCharsets.UTF_8)));
+        walGeneration = generation;
+        Files.deleteIfExists(previous);
+    }
+
+    // Constructor only: appends to the WAL the manifest names, past any line a crash tore
+    private void openWal() throws IOException {
+        Path file = dir.resolve(walName(walGeneration));
+        if (Files.exists(file)) {
+            FileHandler.truncateTornTail(file);
+        }
+        walStream = new FileOutputStream(file.toFile(), true);
+        wal = new PrintWriter(new BufferedWriter(new OutputStreamWriter(walStream, StandardCharsets.UTF_8)));
+    }
+
+    private static Object parse(char table, String record) throws IOException {
+        RecordCodec.Reader reader = new RecordCodec.Reader(record);
+        return reader.next() ? decode(table, reader) : null;
+    }
+
+    // Parses the entity after the sequence field starting at the reader's next field
+    private static Object decode(char table, RecordCodec.Reader reader) {
+        reader.field();
+        switch (table) {
+            case WriteBatch.USERS: return RecordCodec.parseUser(reader);
+            case WriteBatch.EVENTS: return RecordCodec.parseEvent(reader);
+            default: return RecordCodec.parseRegistration(reader);
+        }
+    }
+
+    private static String runName(long number) {
+        return String.format("run-%06d.dat", number);
+    }
+
+    private static String walName(long generation) {
+        return String.format("wal-%06d.log", generation);
+    }
+
+    private static long runNumber(String name) {
+        return Long.parseLong(name.substring(4, name.length() - 4));
+    }
+
+    private static boolean isLive(List<Run> runs, String name) {
+        for (Run run : runs) {
+            if (run.path.getFileName().toString().equals(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // One immutable sorted file with its sparse index and bloom filter, both rebuilt on open
+    private static class Run {
+        final long number;
+        final Path path;
+        final FileChannel channel;
+        final String[] indexKeys;
+        final long[] indexOffsets;
+        final long dataEnd;
+        final long[] bloom;
+        final int bloomBits;
+
+        private Run(long number, Path path, FileChannel channel, String[] indexKeys, long[] indexOffsets,
+                    long dataEnd, long[] bloom, int bloomBits) {
+            this.number = number;
+            this.path = path;
+            this.channel = channel;
+            this.indexKeys = indexKeys;
+            this.indexOffsets = indexOffsets;
+            this.dataEnd = dataEnd;
+            this.bloom = bloom;
+            this.bloomBits = bloomBits;
+        }
+
+        static Run open(Path path, long number) throws IOException {
+            ArrayList<String> keys = new ArrayList<>();
+            ArrayList<Long> offsets = new ArrayList<>();
+            int[] hashes = new int[1024];
+            int count = 0;
+            long dataEnd = 0;
+            try (RecordCodec.Reader reader = new RecordCodec.Reader(new FileInputStream(path.toFile()))) {
+                while (reader.next()) {
+                    long offset = reader.getLineOffset();
+                    String key = reader.field();
+                    if (count % INDEX_INTERVAL == 0) {
+                        keys.add(key);
+                        offsets.add(offset);
+                    }
+                    if (count == hashes.length) {
+                        hashes = Arrays.copyOf(hashes, count * 2);
+                    }
+                    hashes[count++] = key.hashCode();
+                }
+                FileHandler.verifyChecksum(path.toString(), reader);
+                String trailer = reader.getTrailer();
+                dataEnd = Files.size(path) - (trailer == null ? 0 : trailer.length() + 1);
+            }
+
+            int bloomBits = Math.max(64, count * BLOOM_BITS_PER_KEY);
+            long[] bloom = new long[(bloomBits + 63) / 64];
+            for (int i = 0; i < count; i++) {
+                int h1 = hashes[i];
+                int h2 = mix(h1);
+                for (int k = 0; k < BLOOM_HASHES; k++) {
+                    int bit = ((h1 + k * h2) & 0x7fffffff) % bloomBits;
+                    bloom[bit >>> 6] |= 1L << bit;
+                }
+            }
+            long[] indexOffsets = new long[offsets.size()];
+            for (int i = 0; i < indexOffsets.length; i++) {
+                indexOffsets[i] = offsets.get(i);
+            }
+            FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+            return new Run(number, path, channel, keys.toArray(new String[0]), indexOffsets, dataEnd, bloom, bloomBits);
+        }
+
+        boolean mightContain(String key) {
+            int h1 = key.hashCode();
+            int h2 = mix(h1);
+            for (int k = 0; k < BLOOM_HASHES; k++) {
+                int bit = ((h1 + k * h2) & 0x7fffffff) % bloomBits;
+                if ((bloom[bit >>> 6] & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        // The entity, DELETED, or null when this run does not have the key
+        Object find(String key, char table) throws IOException {
+            RecordCodec.Reader reader = seek(key);
+            if (reader == null) {
+                return null;
+            }
+            return reader.hasField() ? decode(table, reader) : DELETED;
+        }
+
+        // The stored value, DELETED, or null when this run does not have the key
+        String value(String key) throws IOException {
+            RecordCodec.Reader reader = seek(key);
+            if (reader == null) {
+                return null;
+            }
+            return reader.hasField() ? reader.remainder() : DELETED;
+        }
+
+        // A reader just past the key's field, or null when this run does not have the key
+        private RecordCodec.Reader seek(String key) throws IOException {
+            if (!mightContain(key)) {
+                return null;
+            }
+            int block = floorBlock(key);
+            if (block < 0) {
+                return null;
+            }
+            long from = indexOffsets[block];
+            long to = block + 1 < indexOffsets.length ? indexOffsets[block + 1] : dataEnd;
+            ByteBuffer buffer = ByteBuffer.allocate((int) (to - from));
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, from + buffer.position()) < 0) {
+                    throw new IOException("unexpected end of " + path);
+                }
+            }
+            RecordCodec.Reader reader = new RecordCodec.Reader(buffer.array());
+            while (reader.next()) {
+                int order = reader.field().compareTo(key);
+                if (order == 0) {
+                    return reader;
+                }
+                if (order > 0) {
+                    return null;
+                }
+            }
+            return null;
+        }
+
+        // Index of the last block whose first key is <= key, or -1
+        int floorBlock(String key) {
+            int lo = 0;
+            int hi = indexKeys.length - 1;
+            int found = -1;
+            while (lo <= hi) {
+                int mid = (lo + hi) >>> 1;
+                if (indexKeys[mid].compareTo(key) <= 0) {
+                    found = mid;
+                    lo = mid + 1;
+                } else {
+                    hi = mid - 1;
+                }
+            }
+            return found;
+        }
+
+        void close() {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // nothing left to release
+            }
+        }
+
+        void delete() {
+            close();
+            try {
+                Files.deleteIfExists(path);
+            } catch (IOException e) {
+                System.err.println("Error deleting " + path + ": " + e.getMessage());
+            }
+        }
+
+        private static int mix(int h) {
+            h ^= h >>> 16;
+            h *= 0x85ebca6b;
+            h ^= h >>> 13;
+            h *= 0xc2b2ae35;
+            h ^= h >>> 16;
+            return h | 1;
+        }
+    }
+
+    // K-way merge of the memtable and every run over [lo, hi): yields each key once, from the
+    // newest source that has it
+    private static class Merge implements AutoCloseable {
+        private final PriorityQueue<Source> heap = new PriorityQueue<>((a, b) -> {
+            int order = a.key.compareTo(b.key);
+            return order != 0 ? order : Integer.compare(a.age, b.age);
+        });
+        private final ArrayList<Source> sources = new ArrayList<>();
+        private Source current;
+
+        Merge(State state, String lo, String hi) throws IOException {
+            try {
+                sources.add(new MemtableSource(state.memtable.subMap(lo, hi).entrySet().iterator(), 0));
+                for (int i = 0; i < state.runs.size(); i++) {
+                    sources.add(new RunSource(state.runs.get(i), lo, hi, i + 1));
+                }
+                for (Source source : sources) {
+                    if (source.advance()) {
+                        heap.add(source);
+                    }
+                }
+            } catch (IOException e) {
+                close();
+                throw e;
+            }
+        }
+
+        boolean next() throws IOException {
+            if (current != null && current.advance()) {
+                heap.add(current);
+            }
+            current = heap.poll();
+            if (current == null) {
+                return false;
+            }
+            // Older versions of the same key are skipped
+            while (!heap.isEmpty() && heap.peek().key.equals(current.key)) {
+                Source older = heap.poll();
+                if (older.advance()) {
+                    heap.add(older);
+                }
+            }
+            return true;
+        }
+
+        String key() { return current.key; }
+        boolean isDeleted() { return current.isDeleted(); }
+        String value() throws IOException { return current.value(); }
+        Object decode(char table) throws IOException { return current.decode(table); }
+
+        public void close() {
+            for (Source source : sources) {
+                source.close();
+            }
+        }
+    }
+
+    private abstract static class Source {
+        final int age;
+        String key;
+
+        Source(int age) {
+            this.age = age;
+        }
+
+        abstract boolean advance() throws IOException;
+        abstract boolean isDeleted();
+        abstract String value() throws IOException;
+        abstract Object decode(char table) throws IOException;
+        void close() {}
+    }
+
+    private static class MemtableSource extends Source {
+        private final Iterator<Map.Entry<String, String>> entries;
+        private String value;
+
+        MemtableSource(Iterator<Map.Entry<String, String>> entries, int age) {
+            super(age);
+            this.entries = entries;
+        }
+
+        boolean advance() {
+            if (!entries.hasNext()) {
+                return false;
+            }
+            Map.Entry<String, String> entry = entries.next();
+            key = entry.getKey();
+            value = entry.getValue();
+            return true;
+        }
+
+        boolean isDeleted() { return value.isEmpty(); }
+        String value() { return value; }
+
+        Object decode(char table) throws IOException {
+            return parse(table, value);
+        }
+    }
+
+    // Streams a run from the block that can hold lo; the reader sits just past the key field
+    private static class RunSource extends Source {
+        private final RecordCodec.Reader reader;
+        private final String hi;
+        private final String lo;
+
+        RunSource(Run run, String lo, String hi, int age) throws IOException {
+            super(age);
+            this.lo = lo;
+            this.hi = hi;
+            FileInputStream in = new FileInputStream(run.path.toFile());
+            int block = run.floorBlock(lo);
+            in.getChannel().position(block < 0 ? 0 : run.indexOffsets[block]);
+            reader = new RecordCodec.Reader(in);
+        }
+
+        boolean advance() throws IOException {
+            while (reader.next()) {
+                key = reader.field();
+                if (key.compareTo(lo) < 0) {
+                    continue;
+                }
+                return key.compareTo(hi) < 0;
+            }
+            return false;
+        }
+
+        boolean isDeleted() { return !reader.hasField(); }
+
+        String value() {
+            return reader.remainder();
+        }
+
+        Object decode(char table) {
+            return LsmStorageEngine.decode(table, reader);
+        }
+
+        void close() {
+            try {
+                reader.close();
+            } catch (IOException e) {
+                // read-only
+            }
+        }
+    }
+}
@@ -0,0 +1,197 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.List;
+
+// Fixed-width registration rows read through a memory mapping. The header records the size
+// and modification time of the snapshot file the rows were written from, so a reader can tell
+// whether the file still matches that snapshot without reading either.
+public class MappedRegistrationFile {
+    private static final int MAGIC = 0x454D5232; // "EMR2"
+    private static final int FIELDS = 5;
+    private static final int HEADER_SIZE = 8 + 16 + FIELDS * 4;
+    private static final int[] EMPTY = new int[0];
+
+    private MappedByteBuffer[] chunks;
+    private int recordsPerChunk;
+    private int count;
+    private long sourceSize;
+    private long sourceModified;
+    private int recordSize;
+    private int[] widths;
+    private int[] offsets;
+    private HashMap<String, int[]> byUser;
+    private HashMap<String, int[]> byEvent;
+
+    private MappedRegistrationFile() {
+    }
+
+    // Fixed-width layout: each field is padded to the longest value in that column,
+    // so record i starts at HEADER_SIZE + i * recordSize
+    public static void write(String file, List<Registration> registrations, long sourceSize, long sourceModified)
+            throws IOException {
+        int[] widths = new int[FIELDS];
+        for (Registration reg : registrations) {
+            String[] fields = fieldsOf(reg);
+            for (int f = 0; f < FIELDS; f++) {
+                widths[f] = Math.max(widths[f], fields[f].getBytes(StandardCharsets.UTF_8).length);
+            }
+        }
+        int recordSize = 0;
+        for (int width : widths) {
+            recordSize += width;
+        }
+
+        int size = recordSize;
+        // Replaced rather than truncated, so a live mapping of the old file stays valid
+        FileHandler.writeAtomically(file, channel -> {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(Math.max(1 << 16, HEADER_SIZE + size));
+            buffer.putInt(MAGIC);
+            buffer.putInt(registrations.size());
+            buffer.putLong(sourceSize);
+            buffer.putLong(sourceModified);
+            for (int width : widths) {
+                buffer.putInt(width);
+            }
+            for (Registration reg : registrations) {
+                if (buffer.remaining() < size) {
+                    drain(channel, buffer);
+                }
+                String[] fields = fieldsOf(reg);
+                for (int f = 0; f < FIELDS; f++) {
+                    byte[] bytes = fields[f].getBytes(StandardCharsets.UTF_8);
+                    buffer.put(bytes);
+                    for (int pad = bytes.length; pad < widths[f]; pad++) {
+                        buffer.put((byte) 0);
+                    }
+                }
+            }
+            drain(channel, buffer);
+        });
+    }
+
+    public static MappedRegistrationFile open(String file) throws IOException {
+        MappedRegistrationFile mapped = new MappedRegistrationFile();
+        try (FileChannel channel = FileChannel.open(Paths.get(file), StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            while (header.hasRemaining()) {
+                if (channel.read(header) < 0) {
+                    throw new IOException(file + " is truncated");
+                }
+            }
+            header.flip();
+            if (header.getInt() != MAGIC) {
+                throw new IOException(file + " is not a registrations data file");
+            }
+            mapped.count = header.getInt();
+            mapped.sourceSize = header.getLong();
+            mapped.sourceModified = header.getLong();
+            mapped.widths = new int[FIELDS];
+            mapped.offsets = new int[FIELDS];
+            for (int f = 0; f < FIELDS; f++) {
+                mapped.widths[f] = header.getInt();
+                mapped.offsets[f] = mapped.recordSize;
+                mapped.recordSize += mapped.widths[f];
+            }
+
+            // A single MappedByteBuffer is limited to 2 GB, so map whole records in chunks
+            int recordSize = Math.max(1, mapped.recordSize);
+            mapped.recordsPerChunk = Math.max(1, Integer.MAX_VALUE / recordSize);
+            int chunkCount = (mapped.count + mapped.recordsPerChunk - 1) / mapped.recordsPerChunk;
+            mapped.chunks = new MappedByteBuffer[chunkCount];
+            for (int c = 0; c < chunkCount; c++) {
+                long start = HEADER_SIZE + (long) c * mapped.recordsPerChunk * mapped.recordSize;
+                int records = Math.min(mapped.recordsPerChunk, mapped.count - c * mapped.recordsPerChunk);
+                mapped.chunks[c] = channel.map(FileChannel.MapMode.READ_ONLY, start,
+                        (long) records * mapped.recordSize);
+            }
+        }
+        mapped.buildIndexes();
+        return mapped;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    // Whether the rows were written from a snapshot file of this size and modification time
+    public boolean isFrom(long size, long modified) {
+        return sourceSize == size && sourceModified == modified;
+    }
+
+    public String getRegistrationId(int position) { return field(position, 0); }
+    public String getUserId(int position) { return field(position, 1); }
+    public String getEventId(int position) { return field(position, 2); }
+    public String getRegistrationDate(int position) { return field(position, 3); }
+    public String getStatus(int position) { return field(position, 4); }
+
+    public Registration get(int position) {
+        return new Registration(getRegistrationId(position), getUserId(position), getEventId(position),
+                getRegistrationDate(position), getStatus(position));
+    }
+
+    public int[] positionsForUser(String userId) {
+        return byUser.getOrDefault(userId, EMPTY);
+    }
+
+    public int[] positionsForEvent(String eventId) {
+        return byEvent.getOrDefault(eventId, EMPTY);
+    }
+
+    // Only the key -> positions tables live on the heap; row fields are decoded on access
+    private void buildIndexes() {
+        HashMap<String, int[]> users = new HashMap<>();
+        HashMap<String, int[]> events = new HashMap<>();
+        HashMap<String, Integer> userCounts = new HashMap<>();
+        HashMap<String, Integer> eventCounts = new HashMap<>();
+        for (int i = 0; i < count; i++) {
+            userCounts.merge(getUserId(i), 1, Integer::sum);
+            eventCounts.merge(getEventId(i), 1, Integer::sum);
+        }
+        userCounts.forEach((key, n) -> users.put(key, new int[n]));
+        eventCounts.forEach((key, n) -> events.put(key, new int[n]));
+        HashMap<String, Integer> userFill = new HashMap<>();
+        HashMap<String, Integer> eventFill = new HashMap<>();
+        for (int i = 0; i < count; i++) {
+            String userId = getUserId(i);
+            String eventId = getEventId(i);
+            users.get(userId)[userFill.merge(userId, 1, Integer::sum) - 1] = i;
+            events.get(eventId)[eventFill.merge(eventId, 1, Integer::sum) - 1] = i;
+        }
+        byUser = users;
+        byEvent = events;
+    }
+
+    private String field(int position, int f) {
+        if (position < 0 || position >= count) {
+            throw new IndexOutOfBoundsException("Position " + position + " of " + count);
+        }
+        MappedByteBuffer chunk = chunks[position / recordsPerChunk];
+        int start = (position % recordsPerChunk) * recordSize + offsets[f];
+        int length = widths[f];
+        while (length > 0 && chunk.get(start + length - 1) == 0) {
+            length--;
+        }
+        byte[] bytes = new byte[length];
+        chunk.get(start, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static String[] fieldsOf(Registration reg) {
+        return new String[]{reg.getRegistrationId(), reg.getUserId(), reg.getEventId(),
+                reg.getRegistrationDate(), reg.getStatus()};
+    }
+
+    private static void drain(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
\ No newline at end of file
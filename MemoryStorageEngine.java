@@ -0,0 +1,126 @@
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+// Keeps the entities themselves in sorted maps and persists nothing. Batches apply under one
+// lock so a reader never sees half of one; gets and scans read the maps without locking.
+// Each key also keeps the sequence number of its first put, so load hands the tables back in
+// creation order like the persistent engines do.
+public class MemoryStorageEngine implements StorageEngine {
+    private final ConcurrentSkipListMap<String, Person> users = new ConcurrentSkipListMap<>();
+    private final ConcurrentSkipListMap<String, Event> events = new ConcurrentSkipListMap<>();
+    private final ConcurrentSkipListMap<String, Registration> registrations = new ConcurrentSkipListMap<>();
+    private final ConcurrentHashMap<String, Long> sequences = new ConcurrentHashMap<>(); // table letter + ID
+    private long nextSequence;
+
+    public void load(ArrayList<Person> users, ArrayList<Event> events, ArrayList<Registration> registrations) {
+        users.addAll(inOrder(WriteBatch.USERS, this.users));
+        events.addAll(inOrder(WriteBatch.EVENTS, this.events));
+        registrations.addAll(inOrder(WriteBatch.REGISTRATIONS, this.registrations));
+    }
+
+    public Person getUser(String userId) { return users.get(userId); }
+    public Event getEvent(String eventId) { return events.get(eventId); }
+    public Registration getRegistration(String registrationId) { return registrations.get(registrationId); }
+
+    public List<Person> scanUsers(String fromKey, String toKey, int limit) {
+        return scan(users, fromKey, toKey, limit);
+    }
+
+    public List<Event> scanEvents(String fromKey, String toKey, int limit) {
+        return scan(events, fromKey, toKey, limit);
+    }
+
+    public List<Registration> scanRegistrations(String fromKey, String toKey, int limit) {
+        return scan(registrations, fromKey, toKey, limit);
+    }
+
+    // Applied at once; there is nothing to wait for
+    public synchronized long append(WriteBatch batch) {
+        for (WriteBatch.Op op : batch.getOps()) {
+            Map<String, Object> table = table(op.getTable());
+            String key = op.getTable() + op.getKey();
+            if (op.isDelete()) {
+                table.remove(op.getKey());
+                sequences.remove(key);
+            } else {
+                table.put(op.getKey(), op.getValue());
+                if (!sequences.containsKey(key)) {
+                    sequences.put(key, nextSequence++);
+                }
+            }
+        }
+        return 0;
+    }
+
+    public void await(long ticket) {
+    }
+
+    public synchronized void replaceAll(ArrayList<Person> users, ArrayList<Event> events,
+                                        ArrayList<Registration> registrations) {
+        this.users.clear();
+        this.events.clear();
+        this.registrations.clear();
+        sequences.clear();
+        for (Person user : users) {
+            this.users.put(user.getId(), user);
+            sequences.put(WriteBatch.USERS + user.getId(), nextSequence++);
+        }
+        for (Event event : events) {
+            this.events.put(event.getEventId(), event);
+            sequences.put(WriteBatch.EVENTS + event.getEventId(), nextSequence++);
+        }
+        for (Registration reg : registrations) {
+            this.registrations.put(reg.getRegistrationId(), reg);
+            sequences.put(WriteBatch.REGISTRATIONS + reg.getRegistrationId(), nextSequence++);
+        }
+    }
+
+    public void flush() {
+    }
+
+    public void close() {
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> table(char table) {
+        switch (table) {
+            case WriteBatch.USERS: return (Map<String, Object>) (Map<String, ?>) users;
+            case WriteBatch.EVENTS: return (Map<String, Object>) (Map<String, ?>) events;
+            default: return (Map<String, Object>) (Map<String, ?>) registrations;
+        }
+    }
+
+    // A key deleted while loading sorts last; the caller sees it or not, as with any scan
+    private <T> List<T> inOrder(char table, ConcurrentSkipListMap<String, T> map) {
+        ArrayList<Map.Entry<String, T>> entries = new ArrayList<>(map.entrySet());
+        entries.sort(Comparator.comparingLong(entry -> sequences.getOrDefault(table + entry.getKey(), Long.MAX_VALUE)));
+        ArrayList<T> values = new ArrayList<>(entries.size());
+        for (Map.Entry<String, T> entry : entries) {
+            values.add(entry.getValue());
+        }
+        return values;
+    }
+
+    private static <T> List<T> scan(ConcurrentSkipListMap<String, T> map, String fromKey, String toKey, int limit) {
+        ConcurrentNavigableMap<String, T> range = map;
+        if (fromKey != null) {
+            range = range.tailMap(fromKey, true);
+        }
+        if (toKey != null) {
+            range = range.headMap(toKey, false);
+        }
+        ArrayList<T> result = new ArrayList<>();
+        for (T value : range.values()) {
+            if (result.size() >= limit) {
+                break;
+            }
+            result.add(value);
+        }
+        return result;
+    }
+}
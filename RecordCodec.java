@@ -0,0 +1,395 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+
+// One record per line, comma-separated, as used by the data files and the journal. Commas, line
+// breaks and backslashes inside a value are backslash-escaped (\, \\ \n \r), and a value starting
+// with '#' is written as \# so a record line can never be taken for a '#' trailer line. Files
+// written before escaping existed read back unchanged; an unknown escape keeps its backslash.
+public class RecordCodec {
+
+    // Appends a separator and then the escaped value
+    public static StringBuilder append(StringBuilder line, String value) {
+        return escape(line.append(','), value);
+    }
+
+    public static StringBuilder append(StringBuilder line, int value) {
+        return line.append(',').append(value);
+    }
+
+    // Appends the escaped value alone, for the first field of a record
+    public static StringBuilder escape(StringBuilder line, String value) {
+        if (value == null) {
+            return line;
+        }
+        int n = value.length();
+        for (int i = 0; i < n; i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case ',': line.append("\\,"); break;
+                case '\\': line.append("\\\\"); break;
+                case '\n': line.append("\\n"); break;
+                case '\r': line.append("\\r"); break;
+                case '#':
+                    if (i == 0) {
+                        line.append('\\');
+                    }
+                    line.append(c);
+                    break;
+                default: line.append(c);
+            }
+        }
+        return line;
+    }
+
+    // Entity records shared by the data files, the journal and the storage engines
+    public static String formatUser(Person user) {
+        StringBuilder line = new StringBuilder(64);
+        escape(line, user.getId());
+        append(line, user.getName());
+        append(line, user.getEmail());
+        append(line, user.getPhone());
+        append(line, user.getRole());
+        return line.toString();
+    }
+
+    public static Person parseUser(Reader reader) {
+        String id = reader.field(), name = reader.field(), email = reader.field(),
+                phone = reader.field(), role = reader.field();
+        if (role == null) {
+            return null;
+        }
+        switch (role) {
+            case "ADMIN":
+                return new Admin(id, name, email, phone);
+            case "ORGANIZER":
+                return new Organizer(id, name, email, phone);
+            case "ATTENDEE":
+                return new Attendee(id, name, email, phone);
+            default:
+                return null;
+        }
+    }
+
+    // The last field is the subtype's own: speakers, duration in hours, or artist
+    public static String formatEvent(Event event) {
+        StringBuilder line = new StringBuilder(128);
+        escape(line, event.getEventId());
+        append(line, event.getTitle());
+        append(line, event.getDescription());
+        append(line, event.getDate());
+        append(line, event.getVenue());
+        append(line, event.getCapacity());
+        append(line, event.getRegisteredCount());
+        append(line, event.getOrganizerId());
+        append(line, event.getEventType());
+        if (event instanceof Conference) {
+            append(line, ((Conference) event).getNumberOfSpeakers());
+        } else if (event instanceof Workshop) {
+            append(line, ((Workshop) event).getDuration());
+        } else if (event instanceof Concert) {
+            append(line, ((Concert) event).getArtist());
+        }
+        return line.toString();
+    }
+
+    public static Event parseEvent(Reader reader) {
+        String eventId = reader.field(), title = reader.field(), description = reader.field(),
+                date = reader.field(), venue = reader.field();
+        if (venue == null) {
+            return null;
+        }
+        int capacity = reader.intField();
+        int registeredCount = reader.intField();
+        String organizerId = reader.field(), eventType = reader.field();
+        if (eventType == null) {
+            return null;
+        }
+
+        // Rows saved before the subtype field existed get the old defaults
+        boolean hasDetail = reader.hasField();
+        Event event = null;
+        switch (eventType) {
+            case "CONFERENCE":
+                event = new Conference(eventId, title, description, date, venue,
+                        capacity, organizerId, hasDetail ? reader.intField() : 5);
+                break;
+            case "WORKSHOP":
+                event = new Workshop(eventId, title, description, date, venue,
+                        capacity, organizerId, hasDetail ? reader.intField() : 8);
+                break;
+            case "CONCERT":
+                event = new Concert(eventId, title, description, date, venue,
+                        capacity, organizerId, hasDetail ? reader.field() : "Unknown Artist");
+                break;
+        }
+
+        if (event != null) {
+            event.setRegisteredCount(registeredCount);
+        }
+        return event;
+    }
+
+    public static String formatRegistration(Registration reg) {
+        StringBuilder line = new StringBuilder(64);
+        escape(line, reg.getRegistrationId());
+        append(line, reg.getUserId());
+        append(line, reg.getEventId());
+        append(line, reg.getRegistrationDate());
+        append(line, reg.getStatus());
+        return line.toString();
+    }
+
+    public static Registration parseRegistration(Reader reader) {
+        String id = reader.field(), userId = reader.field(), eventId = reader.field(),
+                date = reader.field(), status = reader.field();
+        if (status == null) {
+            return null;
+        }
+        return new Registration(id, userId, eventId, date, status);
+    }
+
+    // Single pass over raw UTF-8 bytes: every delimiter is ASCII and never occurs inside a
+    // multi-byte sequence, so fields are cut straight out of the read buffer, integers are parsed
+    // in place, and only escaped fields go through a scratch copy. Lines starting with '#' are
+    // trailers, kept apart from the records; the CRC covers every other line, newline included.
+    public static class Reader implements Closeable {
+        private final InputStream in;
+        private byte[] buffer = new byte[1 << 16];
+        private byte[] scratch = new byte[256];
+        private int limit;
+        private long consumed;
+        private int lineStart;
+        private int lineEnd;
+        private int nextLine;
+        private int cursor;
+        private boolean terminated;
+        private boolean eof;
+        private final CRC32 crc = new CRC32();
+        private long lines;
+        private String trailer;
+
+        public Reader(InputStream in) {
+            this.in = in;
+        }
+
+        // Reads records straight out of bytes already in memory, without copying them
+        public Reader(byte[] bytes, int length) {
+            this.in = null;
+            this.buffer = bytes;
+            this.limit = length;
+            this.eof = true;
+        }
+
+        public Reader(byte[] bytes) {
+            this(bytes, bytes.length);
+        }
+
+        public Reader(String line) {
+            this(line.getBytes(StandardCharsets.UTF_8));
+        }
+
+        // Advances to the next non-blank record; false at end of input
+        public boolean next() throws IOException {
+            while (readLine()) {
+                boolean blank = lineEnd == lineStart;
+                if (!blank && buffer[lineStart] == '#') {
+                    trailer = new String(buffer, lineStart, lineEnd - lineStart, StandardCharsets.UTF_8);
+                    continue;
+                }
+                if (trailer != null && !blank) {
+                    throw new IOException("record after trailer line");
+                }
+                crc.update(buffer, lineStart, nextLine - lineStart);
+                lines++;
+                if (!blank) {
+                    cursor = lineStart;
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        // False only for a last line cut off before its newline, i.e. a torn append
+        public boolean isTerminated() {
+            return terminated;
+        }
+
+        public boolean hasField() {
+            return cursor <= lineEnd;
+        }
+
+        // The next field of the current record, or null when there are no more
+        public String field() {
+            if (cursor > lineEnd) {
+                return null;
+            }
+            int start = cursor;
+            int i = start;
+            boolean escaped = false;
+            int high = 0;
+            while (i < lineEnd) {
+                byte b = buffer[i];
+                if (b == ',') {
+                    break;
+                }
+                if (b == '\\') {
+                    escaped = true;
+                    i++;
+                }
+                high |= b;
+                i++;
+            }
+            if (i > lineEnd) {
+                i = lineEnd;
+            }
+            cursor = i + 1;
+            if (escaped) {
+                return unescape(start, i);
+            }
+            // Pure ASCII (the common case for IDs, dates and statuses) is a plain byte copy
+            return new String(buffer, start, i - start,
+                    high >= 0 ? StandardCharsets.ISO_8859_1 : StandardCharsets.UTF_8);
+        }
+
+        // The rest of the current record from the next field on, still escaped
+        public String remainder() {
+            if (cursor > lineEnd) {
+                return null;
+            }
+            String rest = new String(buffer, cursor, lineEnd - cursor, StandardCharsets.UTF_8);
+            cursor = lineEnd + 1;
+            return rest;
+        }
+
+        public int intField() {
+            if (cursor > lineEnd) {
+                throw new NumberFormatException("missing field");
+            }
+            int start = cursor;
+            int end = start;
+            while (end < lineEnd && buffer[end] != ',') {
+                end++;
+            }
+            cursor = end + 1;
+            int i = start;
+            boolean negative = i < end && buffer[i] == '-';
+            if (negative) {
+                i++;
+            }
+            long value = 0;
+            boolean valid = i < end && end - i <= 10;
+            for (; valid && i < end; i++) {
+                int digit = buffer[i] - '0';
+                valid = digit >= 0 && digit <= 9;
+                value = value * 10 + digit;
+            }
+            value = negative ? -value : value;
+            if (!valid || value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+                throw new NumberFormatException("not an integer: "
+                        + new String(buffer, start, end - start, StandardCharsets.UTF_8));
+            }
+            return (int) value;
+        }
+
+        public long getLineCount() {
+            return lines;
+        }
+
+        public long getChecksum() {
+            return crc.getValue();
+        }
+
+        // The last '#' line seen, or null
+        public String getTrailer() {
+            return trailer;
+        }
+
+        // Byte offset of the current record from the start of the input
+        public long getLineOffset() {
+            return consumed + lineStart;
+        }
+
+        public void close() throws IOException {
+            if (in != null) {
+                in.close();
+            }
+        }
+
+        private String unescape(int start, int end) {
+            if (scratch.length < end - start) {
+                scratch = new byte[Math.max(end - start, scratch.length * 2)];
+            }
+            int n = 0;
+            for (int i = start; i < end; i++) {
+                byte b = buffer[i];
+                if (b == '\\' && i + 1 < end) {
+                    byte next = buffer[++i];
+                    switch (next) {
+                        case 'n': scratch[n++] = '\n'; break;
+                        case 'r': scratch[n++] = '\r'; break;
+                        case ',': case '\\': case '#': scratch[n++] = next; break;
+                        default:
+                            scratch[n++] = '\\';
+                            scratch[n++] = next;
+                    }
+                } else {
+                    scratch[n++] = b;
+                }
+            }
+            return new String(scratch, 0, n, StandardCharsets.UTF_8);
+        }
+
+        private boolean readLine() throws IOException {
+            int scan = nextLine;
+            while (true) {
+                while (scan < limit && buffer[scan] != '\n') {
+                    scan++;
+                }
+                if (scan < limit) {
+                    terminated = true;
+                    setLine(scan, scan + 1);
+                    return true;
+                }
+                if (eof) {
+                    if (nextLine == limit) {
+                        return false;
+                    }
+                    terminated = false;
+                    setLine(limit, limit);
+                    return true;
+                }
+                // Keep the partial line, growing the buffer if it fills it, and read more
+                int partial = limit - nextLine;
+                if (partial == buffer.length) {
+                    byte[] grown = new byte[buffer.length * 2];
+                    System.arraycopy(buffer, nextLine, grown, 0, partial);
+                    buffer = grown;
+                } else if (nextLine > 0) {
+                    System.arraycopy(buffer, nextLine, buffer, 0, partial);
+                }
+                scan -= nextLine;
+                consumed += nextLine;
+                nextLine = 0;
+                limit = partial;
+                int read = in.read(buffer, limit, buffer.length - limit);
+                if (read < 0) {
+                    eof = true;
+                } else {
+                    limit += read;
+                }
+            }
+        }
+
+        private void setLine(int end, int following) {
+            lineStart = nextLine;
+            lineEnd = end;
+            if (lineEnd > lineStart && buffer[lineEnd - 1] == '\r') {
+                lineEnd--;
+            }
+            nextLine = following;
+        }
+    }
+}
@@ -0,0 +1,110 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Per-user and per-event rows are insertion-ordered sets, so removing one row is O(1) rather
+// than a scan of the event's rows. A set only changes inside its map's compute for that key;
+// readers copy it under the set's own monitor.
+public class RegistrationIndex {
+    private ConcurrentHashMap<String, Set<Registration>> byUser;
+    private ConcurrentHashMap<String, Set<Registration>> byEvent;
+    private Set<String> activeKeys;
+
+    public RegistrationIndex() {
+        byUser = new ConcurrentHashMap<>();
+        byEvent = new ConcurrentHashMap<>();
+        activeKeys = ConcurrentHashMap.newKeySet();
+    }
+
+    public void add(Registration reg) {
+        addTo(byUser, reg.getUserId(), reg);
+        addTo(byEvent, reg.getEventId(), reg);
+        if (reg.getStatus().equals("ACTIVE")) {
+            activeKeys.add(key(reg.getUserId(), reg.getEventId()));
+        }
+    }
+
+    public void remove(Registration reg) {
+        removeFrom(byUser, reg.getUserId(), reg);
+        removeFrom(byEvent, reg.getEventId(), reg);
+        if (reg.getStatus().equals("ACTIVE")) {
+            activeKeys.remove(key(reg.getUserId(), reg.getEventId()));
+        }
+    }
+
+    // Call after Registration.setStatus so the ACTIVE set follows the transition
+    public void statusChanged(Registration reg, String previousStatus) {
+        String key = key(reg.getUserId(), reg.getEventId());
+        if (previousStatus.equals("ACTIVE") && !reg.getStatus().equals("ACTIVE")) {
+            activeKeys.remove(key);
+        } else if (reg.getStatus().equals("ACTIVE")) {
+            activeKeys.add(key);
+        }
+    }
+
+    // Atomically marks (user, event) as ACTIVE; false if it already was
+    public boolean claim(String userId, String eventId) {
+        return activeKeys.add(key(userId, eventId));
+    }
+
+    public void release(String userId, String eventId) {
+        activeKeys.remove(key(userId, eventId));
+    }
+
+    public ArrayList<Registration> removeEvent(String eventId) {
+        Set<Registration> regs = byEvent.remove(eventId);
+        if (regs == null) {
+            return new ArrayList<>();
+        }
+        ArrayList<Registration> removed = copy(regs);
+        for (Registration reg : removed) {
+            removeFrom(byUser, reg.getUserId(), reg);
+            activeKeys.remove(key(reg.getUserId(), eventId));
+        }
+        return removed;
+    }
+
+    public boolean isActive(String userId, String eventId) {
+        return activeKeys.contains(key(userId, eventId));
+    }
+
+    public List<Registration> getByUser(String userId) {
+        Set<Registration> regs = byUser.get(userId);
+        return regs == null ? new ArrayList<>() : copy(regs);
+    }
+
+    public List<Registration> getByEvent(String eventId) {
+        Set<Registration> regs = byEvent.get(eventId);
+        return regs == null ? new ArrayList<>() : copy(regs);
+    }
+
+    private static ArrayList<Registration> copy(Set<Registration> regs) {
+        synchronized (regs) {
+            return new ArrayList<>(regs);
+        }
+    }
+
+    private static void addTo(ConcurrentHashMap<String, Set<Registration>> map, String key, Registration reg) {
+        map.compute(key, (k, regs) -> {
+            if (regs == null) {
+                regs = Collections.synchronizedSet(new LinkedHashSet<>());
+            }
+            regs.add(reg);
+            return regs;
+        });
+    }
+
+    private static void removeFrom(ConcurrentHashMap<String, Set<Registration>> map, String key, Registration reg) {
+        map.computeIfPresent(key, (k, regs) -> {
+            regs.remove(reg);
+            return regs.isEmpty() ? null : regs;
+        });
+    }
+
+    private static String key(String userId, String eventId) {
+        return userId + ":" + eventId;
+    }
+}
\ No newline at end of file
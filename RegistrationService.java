@@ -0,0 +1,500 @@
+import exceptions.DuplicateRegistrationException;
+import exceptions.EventCapacityExceededException;
+import exceptions.EventNotFoundException;
+import exceptions.UserNotFoundException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class RegistrationService {
+    private static final int LOCK_STRIPES = 64;
+    private static final Instrumentation.Operation REGISTER = Instrumentation.operation("registration.register");
+    private static final Instrumentation.Operation REGISTER_BATCH = Instrumentation.operation("registration.registerBatch");
+    private static final Instrumentation.Operation JOIN_WAITLIST = Instrumentation.operation("registration.joinWaitlist");
+    private static final Instrumentation.Operation CANCEL = Instrumentation.operation("registration.cancel");
+    private static final Instrumentation.Operation DUPLICATE_CHECK = Instrumentation.operation("registration.isRegistered");
+
+    private final Object[] locks;
+    private final Map<String, Event> eventMap;
+    private final Map<String, Person> userMap;
+    private final RegistrationStore store;
+    private final Waitlist waitlist;
+    private final ReportMetrics metrics;
+    private final EventListing listing;
+    private final StorageEngine storage;
+    private final MappedRegistrationFile history; // CANCELLED rows kept off the heap; null unless mapped
+
+    // Every change is appended to storage as one batch while its stripe is still held, so the
+    // event's seat count and the registrations in that batch always agree and batches for one
+    // event reach the log in the order they were made. The wait for the write (and fsync) comes
+    // after the stripe is released. A failed write takes back a new registration; cancellations,
+    // promotions and removals have no clean inverse (queue positions, promoted seats), so those
+    // just fail, and as storage refuses writes after a failure nothing later builds on the lost
+    // batch.
+    public RegistrationService(Map<String, Event> eventMap, Map<String, Person> userMap, RegistrationStore store,
+                               Waitlist waitlist, ReportMetrics metrics, EventListing listing,
+                               StorageEngine storage, MappedRegistrationFile history) {
+        this.storage = storage;
+        this.history = history;
+        this.eventMap = eventMap;
+        this.userMap = userMap;
+        this.store = store;
+        this.waitlist = waitlist;
+        this.metrics = metrics;
+        this.listing = listing;
+        this.locks = new Object[LOCK_STRIPES];
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    public Registration register(String userId, String eventId)
+            throws UserNotFoundException, EventNotFoundException, DuplicateRegistrationException,
+            EventCapacityExceededException {
+        long start = System.nanoTime();
+        try {
+            return doRegister(userId, eventId);
+        } catch (Exception e) {
+            REGISTER.error(e);
+            throw e;
+        } finally {
+            REGISTER.record(start);
+        }
+    }
+
+    // Duplicate check, seat reservation and insert happen under the event's stripe only,
+    // so registrations for events on different stripes never wait on each other
+    private Registration doRegister(String userId, String eventId)
+            throws UserNotFoundException, EventNotFoundException, DuplicateRegistrationException,
+            EventCapacityExceededException {
+        if (!userMap.containsKey(userId)) {
+            throw new UserNotFoundException("User not found!");
+        }
+        Registration registration;
+        Event event;
+        long ticket;
+        synchronized (lockFor(eventId)) {
+            event = eventMap.get(eventId);
+            if (event == null) {
+                throw new EventNotFoundException("Event not found!");
+            }
+            if (waitlist.contains(userId, eventId)) {
+                throw new DuplicateRegistrationException("Already on the waitlist for this event!");
+            }
+            if (!store.claim(userId, eventId)) {
+                throw new DuplicateRegistrationException("Already registered for this event!");
+            }
+            if (!event.incrementRegistration()) {
+                store.release(userId, eventId);
+                throw new EventCapacityExceededException("Event is full!");
+            }
+            seatsChanged(event, 1);
+
+            String regId = EventManagementSystem.generateId("R");
+            String regDate = LocalDate.now().toString();
+            registration = new Registration(regId, userId, eventId, regDate, "ACTIVE");
+            store.add(registration);
+            metrics.registrationAdded(registration);
+            ticket = storage.append(new WriteBatch().putRegistration(registration).putEvent(event));
+        }
+        Registration added = registration;
+        Event registered = event;
+        storage.awaitOrUndo(ticket, () -> undoAdd(registered, Collections.singletonList(added)));
+        return registration;
+    }
+
+    public ArrayList<Registration> registerBatch(List<String> userIds, String eventId)
+            throws UserNotFoundException, EventNotFoundException, DuplicateRegistrationException,
+            EventCapacityExceededException {
+        long start = System.nanoTime();
+        try {
+            return doRegisterBatch(userIds, eventId);
+        } catch (Exception e) {
+            REGISTER_BATCH.error(e);
+            throw e;
+        } finally {
+            REGISTER_BATCH.record(start);
+        }
+    }
+
+    // Registers a whole group for one event or nobody: duplicates and capacity are checked for
+    // every user before any seat is taken, and the group is written as a single batch
+    private ArrayList<Registration> doRegisterBatch(List<String> userIds, String eventId)
+            throws UserNotFoundException, EventNotFoundException, DuplicateRegistrationException,
+            EventCapacityExceededException {
+        ArrayList<String> unknown = new ArrayList<>();
+        for (String userId : userIds) {
+            if (!userMap.containsKey(userId)) {
+                unknown.add(userId);
+            }
+        }
+        if (!unknown.isEmpty()) {
+            throw new UserNotFoundException("No such user: " + String.join(", ", unknown));
+        }
+        ArrayList<Registration> added = new ArrayList<>(userIds.size());
+        Event event;
+        long ticket;
+        synchronized (lockFor(eventId)) {
+            event = eventMap.get(eventId);
+            if (event == null) {
+                throw new EventNotFoundException("Event not found!");
+            }
+            HashSet<String> seen = new HashSet<>();
+            ArrayList<String> duplicates = new ArrayList<>();
+            for (String userId : userIds) {
+                if (!seen.add(userId) || store.isActive(userId, eventId) || waitlist.contains(userId, eventId)) {
+                    duplicates.add(userId);
+                }
+            }
+            if (!duplicates.isEmpty()) {
+                throw new DuplicateRegistrationException("Already registered for this event: " +
+                        String.join(", ", duplicates));
+            }
+            if (!event.reserveSeats(userIds.size())) {
+                throw new EventCapacityExceededException("Only " + (event.getCapacity() - event.getRegisteredCount()) +
+                        " seats left for " + userIds.size() + " attendees!");
+            }
+            seatsChanged(event, userIds.size());
+
+            String regDate = LocalDate.now().toString();
+            WriteBatch batch = new WriteBatch();
+            for (String userId : userIds) {
+                store.claim(userId, eventId);
+                Registration registration = new Registration(EventManagementSystem.generateId("R"),
+                        userId, eventId, regDate, "ACTIVE");
+                store.add(registration);
+                metrics.registrationAdded(registration);
+                added.add(registration);
+                batch.putRegistration(registration);
+            }
+            ticket = storage.append(batch.putEvent(event));
+        }
+        Event registered = event;
+        storage.awaitOrUndo(ticket, () -> undoAdd(registered, added));
+        return added;
+    }
+
+    public Registration joinWaitlist(String userId, String eventId)
+            throws UserNotFoundException, EventNotFoundException, DuplicateRegistrationException {
+        long start = System.nanoTime();
+        try {
+            return doJoinWaitlist(userId, eventId);
+        } catch (Exception e) {
+            JOIN_WAITLIST.error(e);
+            throw e;
+        } finally {
+            JOIN_WAITLIST.record(start);
+        }
+    }
+
+    // Queues the user when the event is full; returns an ACTIVE registration if a seat is free
+    private Registration doJoinWaitlist(String userId, String eventId)
+            throws UserNotFoundException, EventNotFoundException, DuplicateRegistrationException {
+        try {
+            return doRegister(userId, eventId);
+        } catch (EventCapacityExceededException e) {
+            // full: fall through to queueing
+        }
+        Registration registration;
+        Event event;
+        long ticket;
+        synchronized (lockFor(eventId)) {
+            event = eventMap.get(eventId);
+            if (event == null) {
+                throw new EventNotFoundException("Event not found!");
+            }
+            if (store.isActive(userId, eventId)) {
+                throw new DuplicateRegistrationException("Already registered for this event!");
+            }
+            if (waitlist.contains(userId, eventId)) {
+                throw new DuplicateRegistrationException("Already on the waitlist for this event!");
+            }
+            String regId = EventManagementSystem.generateId("R");
+            registration = new Registration(regId, userId, eventId, LocalDate.now().toString(), "WAITLISTED");
+            store.add(registration);
+            waitlist.add(registration);
+            metrics.registrationAdded(registration);
+            ticket = storage.append(new WriteBatch().putRegistration(registration));
+        }
+        Registration queued = registration;
+        Event registered = event;
+        storage.awaitOrUndo(ticket, () -> undoAdd(registered, Collections.singletonList(queued)));
+        return registration;
+    }
+
+    public Registration cancel(String userId, String registrationId) throws UserNotFoundException {
+        long start = System.nanoTime();
+        try {
+            return doCancel(userId, registrationId);
+        } catch (Exception e) {
+            CANCEL.error(e);
+            throw e;
+        } finally {
+            CANCEL.record(start);
+        }
+    }
+
+    // Cancelling an ACTIVE registration frees its seat for the head of the waitlist;
+    // cancelling a WAITLISTED one just leaves the queue
+    private Registration doCancel(String userId, String registrationId) throws UserNotFoundException {
+        Registration reg = store.get(registrationId);
+        if (reg == null || !reg.getUserId().equals(userId)) {
+            throw new UserNotFoundException("Registration not found!");
+        }
+        Registration cancelled;
+        long ticket;
+        synchronized (lockFor(reg.getEventId())) {
+            reg = store.get(registrationId);
+            if (reg == null || reg.getStatus().equals("CANCELLED")) {
+                throw new IllegalArgumentException("Registration is not active!");
+            }
+            String previous = reg.getStatus();
+            store.setStatus(registrationId, "CANCELLED");
+            metrics.statusChanged(previous, "CANCELLED");
+            // The store may hand out copies, so the batch takes the updated one
+            cancelled = store.get(registrationId);
+            WriteBatch batch = new WriteBatch().putRegistration(cancelled);
+            if (previous.equals("WAITLISTED")) {
+                waitlist.remove(reg);
+            } else {
+                Event event = eventMap.get(reg.getEventId());
+                if (event != null) {
+                    event.decrementRegistration();
+                    seatsChanged(event, -1);
+                    batch.putEvent(event);
+                }
+                putAll(batch, promoteWaiting(event));
+            }
+            ticket = storage.append(batch);
+        }
+        storage.awaitOrUndo(ticket, null);
+        return cancelled;
+    }
+
+    // Raising capacity promotes as many waiting users as there are new seats
+    public ArrayList<Registration> changeCapacity(Event event, int capacity) {
+        ArrayList<Registration> promoted;
+        long ticket;
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive!");
+        }
+        synchronized (lockFor(event.getEventId())) {
+            if (capacity < event.getRegisteredCount()) {
+                throw new IllegalArgumentException("Capacity cannot be below the " +
+                        event.getRegisteredCount() + " seats already taken!");
+            }
+            int delta = capacity - event.getCapacity();
+            event.setCapacity(capacity);
+            metrics.capacityChanged(event, delta);
+            listing.reposition(event);
+            promoted = promoteWaiting(event);
+            ticket = storage.append(putAll(new WriteBatch().putEvent(event), promoted));
+        }
+        storage.awaitOrUndo(ticket, null);
+        return promoted;
+    }
+
+    // 1-based place in the event's waitlist, or 0 if the registration is not waiting
+    public int waitlistPosition(Registration reg) {
+        return waitlist.position(reg.getEventId(), reg.getRegistrationId());
+    }
+
+    public int waitlistSize(String eventId) {
+        return waitlist.size(eventId);
+    }
+
+    // Caller holds the event's stripe
+    private ArrayList<Registration> promoteWaiting(Event event) {
+        ArrayList<Registration> promoted = new ArrayList<>();
+        if (event == null) {
+            return promoted;
+        }
+        Registration next;
+        while (event.getRegisteredCount() < event.getCapacity()
+                && (next = waitlist.poll(event.getEventId())) != null) {
+            // Seats only change under this stripe, so the increment cannot fail here; and
+            // register/joinWaitlist never let a waiting user also hold an ACTIVE seat
+            event.incrementRegistration();
+            store.setStatus(next.getRegistrationId(), "ACTIVE");
+            metrics.statusChanged("WAITLISTED", "ACTIVE");
+            seatsChanged(event, 1);
+            promoted.add(store.get(next.getRegistrationId()));
+        }
+        return promoted;
+    }
+
+    // Takes back registrations whose batch failed to reach storage, under the event's stripe
+    // again. A cancellation queued meanwhile has already freed the seat of an ACTIVE one (and
+    // failed too, since storage refuses writes after a failure), so only what is still there is
+    // released.
+    private void undoAdd(Event event, List<Registration> registrations) {
+        synchronized (lockFor(event.getEventId())) {
+            int released = 0;
+            for (Registration reg : registrations) {
+                Registration current = store.remove(reg.getRegistrationId());
+                if (current == null) {
+                    continue;
+                }
+                if (current.getStatus().equals("ACTIVE")) {
+                    event.decrementRegistration();
+                    released++;
+                } else if (current.getStatus().equals("WAITLISTED")) {
+                    waitlist.remove(current);
+                }
+                metrics.registrationRemoved(current);
+            }
+            if (released > 0) {
+                seatsChanged(event, -released);
+            }
+        }
+    }
+
+    // Writes an event created or edited outside the service. The record is appended under the
+    // event's stripe, so it cannot slip between a seat change and that change's own batch; an
+    // event deleted meanwhile is not written back.
+    public void saveEvent(Event event, Runnable undo) {
+        long ticket;
+        synchronized (lockFor(event.getEventId())) {
+            if (eventMap.get(event.getEventId()) != event) {
+                return;
+            }
+            ticket = storage.append(new WriteBatch().putEvent(event));
+        }
+        storage.awaitOrUndo(ticket, undo);
+    }
+
+    private static WriteBatch putAll(WriteBatch batch, List<Registration> registrations) {
+        for (Registration reg : registrations) {
+            batch.putRegistration(reg);
+        }
+        return batch;
+    }
+
+    // Deletes the event and its registrations from storage too
+    public ArrayList<Registration> removeEvent(String eventId) {
+        ArrayList<Registration> removed;
+        long ticket;
+        synchronized (lockFor(eventId)) {
+            removed = store.removeEvent(eventId);
+            waitlist.removeEvent(eventId);
+            WriteBatch batch = new WriteBatch().deleteEvent(eventId);
+            for (Registration reg : removed) {
+                metrics.registrationRemoved(reg);
+                batch.deleteRegistration(reg.getRegistrationId());
+            }
+            ticket = storage.append(batch);
+        }
+        storage.awaitOrUndo(ticket, null);
+        return removed;
+    }
+
+    // One pass over the user's own registrations, grouped by event: each event's seats are
+    // released, its rows removed in one store call and its waitlist promoted under that event's
+    // stripe, once per event
+    public ArrayList<Registration> removeUser(String userId) {
+        LinkedHashMap<String, ArrayList<Registration>> byEvent = new LinkedHashMap<>();
+        for (Registration reg : store.getByUser(userId)) {
+            byEvent.computeIfAbsent(reg.getEventId(), k -> new ArrayList<>()).add(reg);
+        }
+
+        ArrayList<Registration> removed = new ArrayList<>();
+        long ticket = 0;
+        for (Map.Entry<String, ArrayList<Registration>> entry : byEvent.entrySet()) {
+            synchronized (lockFor(entry.getKey())) {
+                Event event = eventMap.get(entry.getKey());
+                WriteBatch batch = new WriteBatch();
+                int released = 0;
+                ArrayList<String> ids = new ArrayList<>(entry.getValue().size());
+                for (Registration reg : entry.getValue()) {
+                    ids.add(reg.getRegistrationId());
+                }
+                for (Registration gone : store.removeAll(entry.getKey(), ids)) {
+                    if (gone.getStatus().equals("ACTIVE")) {
+                        released++;
+                    } else if (gone.getStatus().equals("WAITLISTED")) {
+                        waitlist.remove(gone);
+                    }
+                    metrics.registrationRemoved(gone);
+                    removed.add(gone);
+                    batch.deleteRegistration(gone.getRegistrationId());
+                }
+                if (event != null && released > 0) {
+                    for (int i = 0; i < released; i++) {
+                        event.decrementRegistration();
+                    }
+                    seatsChanged(event, -released);
+                    putAll(batch.putEvent(event), promoteWaiting(event));
+                }
+                ticket = storage.append(batch);
+            }
+        }
+        // Tickets commit in order, so the last one covers every event's batch
+        storage.awaitOrUndo(ticket, null);
+        return removed;
+    }
+
+    public boolean isRegistered(String userId, String eventId) {
+        long start = System.nanoTime();
+        try {
+            return store.isActive(userId, eventId);
+        } finally {
+            DUPLICATE_CHECK.record(start);
+        }
+    }
+
+    public List<Registration> getByUser(String userId) {
+        return store.getByUser(userId);
+    }
+
+    // getByUser plus the user's cancelled registrations that only live in the mapped history,
+    // skipping those of events deleted since
+    public List<Registration> getHistoryByUser(String userId) {
+        List<Registration> registrations = store.getByUser(userId);
+        if (history == null) {
+            return registrations;
+        }
+        HashSet<String> live = new HashSet<>();
+        for (Registration reg : registrations) {
+            live.add(reg.getRegistrationId());
+        }
+        for (int position : history.positionsForUser(userId)) {
+            if (history.getStatus(position).equals("CANCELLED")
+                    && !live.contains(history.getRegistrationId(position))) {
+                Registration reg = history.get(position);
+                if (eventMap.containsKey(reg.getEventId())) {
+                    registrations.add(reg);
+                }
+            }
+        }
+        return registrations;
+    }
+
+    public List<Registration> getByEvent(String eventId) {
+        return store.getByEvent(eventId);
+    }
+
+    public Registration get(String registrationId) {
+        return store.get(registrationId);
+    }
+
+    public ArrayList<Registration> getAll() {
+        return store.getAll();
+    }
+
+    public int size() {
+        return store.size();
+    }
+
+    private void seatsChanged(Event event, int delta) {
+        metrics.seatsChanged(event, delta);
+        listing.reposition(event);
+    }
+
+    private Object lockFor(String eventId) {
+        return locks[(eventId.hashCode() & 0x7fffffff) % LOCK_STRIPES];
+    }
+}
\ No newline at end of file
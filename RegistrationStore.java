@@ -0,0 +1,23 @@
+import java.util.ArrayList;
+import java.util.List;
+
+public interface RegistrationStore {
+    // Atomically marks (user, event) as ACTIVE; false if it already was
+    boolean claim(String userId, String eventId);
+    void release(String userId, String eventId);
+    boolean isActive(String userId, String eventId);
+
+    void add(Registration reg);
+    Registration get(String registrationId);
+    Registration remove(String registrationId);
+    // Registrations of one event removed together; IDs no longer there are skipped
+    ArrayList<Registration> removeAll(String eventId, List<String> registrationIds);
+    void setStatus(String registrationId, String status);
+
+    ArrayList<Registration> removeEvent(String eventId);
+
+    List<Registration> getByUser(String userId);
+    List<Registration> getByEvent(String eventId);
+    ArrayList<Registration> getAll();
+    int size();
+}
\ No newline at end of file
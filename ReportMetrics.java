@@ -0,0 +1,119 @@
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+// Running totals updated on every mutation, so reports never rescan users/events/registrations.
+// Seats follow Event.registeredCount (seatsChanged), registrations follow their status.
+public class ReportMetrics {
+    private final ConcurrentHashMap<String, LongAdder> usersByRole = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, LongAdder> eventsByType = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, LongAdder> registrationsByStatus = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, OrganizerTotals> byOrganizer = new ConcurrentHashMap<>();
+    private final OrganizerTotals overall = new OrganizerTotals();
+
+    public static class OrganizerTotals {
+        private final LongAdder events = new LongAdder();
+        private final LongAdder capacity = new LongAdder();
+        private final LongAdder seatsSold = new LongAdder();
+        private final DoubleAdder revenue = new DoubleAdder();
+
+        public long getEvents() { return events.sum(); }
+        public long getCapacity() { return capacity.sum(); }
+        public long getSeatsSold() { return seatsSold.sum(); }
+        public long getSeatsRemaining() { return capacity.sum() - seatsSold.sum(); }
+        public double getRevenue() { return revenue.sum(); }
+
+        private void add(int eventDelta, int capacityDelta, int seatDelta, double revenueDelta) {
+            events.add(eventDelta);
+            capacity.add(capacityDelta);
+            seatsSold.add(seatDelta);
+            revenue.add(revenueDelta);
+        }
+    }
+
+    public void userAdded(Person user) {
+        increment(usersByRole, user.getRole(), 1);
+    }
+
+    public void userRemoved(Person user) {
+        increment(usersByRole, user.getRole(), -1);
+    }
+
+    public void eventAdded(Event event) {
+        increment(eventsByType, event.getEventType(), 1);
+        int seats = event.getRegisteredCount();
+        adjust(event, 1, event.getCapacity(), seats, seats * event.calculateCost());
+    }
+
+    public void eventRemoved(Event event) {
+        increment(eventsByType, event.getEventType(), -1);
+        int seats = event.getRegisteredCount();
+        adjust(event, -1, -event.getCapacity(), -seats, -seats * event.calculateCost());
+    }
+
+    // Call with the same delta that was applied to Event.registeredCount
+    public void seatsChanged(Event event, int delta) {
+        adjust(event, 0, 0, delta, delta * event.calculateCost());
+    }
+
+    public void capacityChanged(Event event, int delta) {
+        adjust(event, 0, delta, 0, 0);
+    }
+
+    public void registrationAdded(Registration reg) {
+        increment(registrationsByStatus, reg.getStatus(), 1);
+    }
+
+    public void registrationRemoved(Registration reg) {
+        increment(registrationsByStatus, reg.getStatus(), -1);
+    }
+
+    public void statusChanged(String from, String to) {
+        increment(registrationsByStatus, from, -1);
+        increment(registrationsByStatus, to, 1);
+    }
+
+    public long usersWithRole(String role) {
+        return sum(usersByRole, role);
+    }
+
+    public long eventsOfType(String type) {
+        return sum(eventsByType, type);
+    }
+
+    public long registrationsWithStatus(String status) {
+        return sum(registrationsByStatus, status);
+    }
+
+    public Map<String, Long> getRegistrationsByStatus() {
+        LinkedHashMap<String, Long> result = new LinkedHashMap<>();
+        registrationsByStatus.forEach((status, count) -> result.put(status, count.sum()));
+        return result;
+    }
+
+    public OrganizerTotals getTotals() {
+        return overall;
+    }
+
+    public OrganizerTotals getOrganizerTotals(String organizerId) {
+        OrganizerTotals totals = byOrganizer.get(organizerId);
+        return totals == null ? new OrganizerTotals() : totals;
+    }
+
+    private void adjust(Event event, int eventDelta, int capacityDelta, int seatDelta, double revenueDelta) {
+        overall.add(eventDelta, capacityDelta, seatDelta, revenueDelta);
+        byOrganizer.computeIfAbsent(event.getOrganizerId(), k -> new OrganizerTotals())
+                .add(eventDelta, capacityDelta, seatDelta, revenueDelta);
+    }
+
+    private static void increment(ConcurrentHashMap<String, LongAdder> counters, String key, int delta) {
+        counters.computeIfAbsent(key, k -> new LongAdder()).add(delta);
+    }
+
+    private static long sum(ConcurrentHashMap<String, LongAdder> counters, String key) {
+        LongAdder counter = counters.get(key);
+        return counter == null ? 0 : counter.sum();
+    }
+}
\ No newline at end of file
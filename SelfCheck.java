@@ -0,0 +1,404 @@
+import exceptions.DuplicateRegistrationException;
+import exceptions.EventCapacityExceededException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+// Checks to run after a change or on a new machine, in a fresh temporary directory that is
+// removed afterwards (-Dems.dataDir is ignored); exits with status 1 if any fails.
+//   seats      threads register for a few small events at once; no event may end up with more
+//              ACTIVE registrations than seats or a seat count that disagrees with them, and no
+//              (user, event) pair may be ACTIVE twice
+//   waitlists  the same with cancellations, waitlist joins and capacity changes mixed in; each
+//              waitlist must also match the WAITLISTED registrations, hold a pair at most once
+//              and only be non-empty while its event is full
+//   records    users, events and registrations survive RecordCodec with separators, escapes,
+//              line breaks and non-ASCII text in their values
+//   journal    after a crash leaves a torn last line in the journal, a restart loads the state
+//              from before the crash, and a write made after it survives the next restart
+//   lsm        journal batches survive encoding; the lsm engine, restarted after a torn WAL
+//              tail and again after one more write, loads every registration in creation order
+//   snapshot   the records above survive a save and load of the binary snapshot
+//   mapped     the registrations above read back unchanged from registrations.dat
+//
+// java EventManagementSystem selfcheck [--threads N] [--ops N] [--seed N]
+public class SelfCheck {
+    private interface Check {
+        void run() throws Exception;
+    }
+
+    private int threads = 8;
+    private int ops = 20000;
+    private long seed = 1;
+    private int failures;
+
+    public static void main(String[] args) {
+        SelfCheck selfCheck = new SelfCheck();
+        try {
+            for (int i = 0; i < args.length; i += 2) {
+                if (i + 1 == args.length) {
+                    throw new IllegalArgumentException("Missing value for " + args[i]);
+                }
+                switch (args[i]) {
+                    case "--threads": selfCheck.threads = Integer.parseInt(args[i + 1]); break;
+                    case "--ops": selfCheck.ops = Integer.parseInt(args[i + 1]); break;
+                    case "--seed": selfCheck.seed = Long.parseLong(args[i + 1]); break;
+                    default: throw new IllegalArgumentException("Unknown option " + args[i]);
+                }
+            }
+        } catch (RuntimeException e) {
+            System.out.println("Invalid arguments: " + e.getMessage());
+            System.out.println("Usage: java EventManagementSystem selfcheck [--threads N] [--ops N] [--seed N]");
+            return;
+        }
+
+        File dir;
+        try {
+            dir = Files.createTempDirectory("ems-selfcheck").toFile();
+        } catch (IOException e) {
+            System.err.println("Cannot create a scratch directory: " + e.getMessage());
+            System.exit(1);
+            return;
+        }
+        // Read when FileHandler and LsmStorageEngine first load, which is after this
+        System.setProperty("ems.dataDir", dir.getPath());
+        if (System.getProperty("ems.lsmMemtable") == null) {
+            System.setProperty("ems.lsmMemtable", "64"); // so the lsm check flushes runs too
+        }
+        try {
+            selfCheck.runAll();
+        } finally {
+            delete(dir);
+        }
+        if (selfCheck.failures > 0) {
+            System.out.println(selfCheck.failures + " check(s) failed");
+            System.exit(1);
+        }
+        System.out.println("All checks passed");
+    }
+
+    private void runAll() {
+        EventManagementSystem system = smallEvents();
+        check("seats: " + threads + " threads, " + ops + " registrations", () -> {
+            concurrently(system, (service, random, userId, event) -> service.register(userId, event.getEventId()));
+            seats(system);
+        });
+        check("waitlists: " + threads + " threads, " + ops + " mixed operations", () -> {
+            concurrently(system, SelfCheck::mixed);
+            seats(system);
+            waitlists(system);
+        });
+        check("records: round trip", () -> {
+            roundTrip(USERS, RecordCodec::formatUser, RecordCodec::parseUser);
+            roundTrip(EVENTS, RecordCodec::formatEvent, RecordCodec::parseEvent);
+            roundTrip(REGISTRATIONS, RecordCodec::formatRegistration, RecordCodec::parseRegistration);
+        });
+        check("journal: torn tail", () -> restartAfterTornJournal(system));
+        check("lsm: batches", SelfCheck::batchRoundTrip);
+        check("lsm: torn tail and creation order", this::restartAfterTornWal);
+        check("snapshot: round trip", () -> {
+            String file = new File(System.getProperty("ems.dataDir"), "check-snapshot.bin").getPath();
+            BinarySnapshot.save(file, new ArrayList<>(USERS), new ArrayList<>(EVENTS), new ArrayList<>(REGISTRATIONS));
+            BinarySnapshot loaded = BinarySnapshot.load(file);
+            require(records(loaded.getUsers(), loaded.getEvents(), loaded.getRegistrations())
+                    .equals(records(USERS, EVENTS, REGISTRATIONS)), "loaded records differ from the saved ones");
+        });
+        check("mapped: round trip", () -> {
+            String file = new File(System.getProperty("ems.dataDir"), "check-registrations.dat").getPath();
+            MappedRegistrationFile.write(file, REGISTRATIONS, 1, 2);
+            MappedRegistrationFile mapped = MappedRegistrationFile.open(file);
+            require(mapped.isFrom(1, 2) && mapped.size() == REGISTRATIONS.size(), "header differs");
+            for (int i = 0; i < mapped.size(); i++) {
+                String row = RecordCodec.formatRegistration(mapped.get(i));
+                require(row.equals(RecordCodec.formatRegistration(REGISTRATIONS.get(i))), "row " + i + " reads " + row);
+            }
+        });
+    }
+
+    private void check(String name, Check check) {
+        try {
+            check.run();
+            System.out.println("ok    " + name);
+        } catch (Exception e) {
+            failures++;
+            System.out.println("FAIL  " + name + ": " + e.getMessage());
+        }
+    }
+
+    private static void require(boolean ok, String problem) {
+        if (!ok) {
+            throw new IllegalStateException(problem);
+        }
+    }
+
+    // Seats: 40 attendees and 8 events of 3 to 6 seats, so most operations contend
+
+    private interface Operation {
+        void run(RegistrationService service, Random random, String userId, Event event) throws Exception;
+    }
+
+    private static EventManagementSystem smallEvents() {
+        ArrayList<Person> users = new ArrayList<>();
+        users.add(new Organizer("O1", "Organizer", "organizer@example.com", "555-0001"));
+        for (int i = 0; i < 40; i++) {
+            users.add(new Attendee("A" + i, "Attendee " + i, "a" + i + "@example.com", "555-1" + i));
+        }
+        ArrayList<Event> events = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            events.add(new Concert("E" + i, "Concert " + i, "Seats", "01-0" + (i + 1) + "-2030", "Hall",
+                    3 + i % 4, "O1", "Band"));
+        }
+        CsvStorageEngine storage = new CsvStorageEngine();
+        try {
+            storage.replaceAll(users, events, new ArrayList<>());
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot write the check data: " + e.getMessage(), e);
+        }
+        return new EventManagementSystem(storage);
+    }
+
+    // Runs ops operations over the threads on random (attendee, event) pairs. Refusals the
+    // service is expected to make under contention are fine; anything else fails the check.
+    private void concurrently(EventManagementSystem system, Operation operation) throws Exception {
+        RegistrationService service = system.getRegistrationService();
+        List<Event> events = new ArrayList<>(system.getEvents());
+        AtomicInteger remaining = new AtomicInteger(ops);
+        AtomicReference<Exception> unexpected = new AtomicReference<>();
+        ArrayList<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            Random random = new Random(seed + t);
+            workers.add(new Thread(() -> {
+                while (remaining.getAndDecrement() > 0) {
+                    String userId = "A" + random.nextInt(40);
+                    Event event = events.get(random.nextInt(events.size()));
+                    try {
+                        operation.run(service, random, userId, event);
+                    } catch (DuplicateRegistrationException | EventCapacityExceededException
+                             | IllegalArgumentException e) {
+                        // full, already registered, already cancelled
+                    } catch (Exception e) {
+                        unexpected.compareAndSet(null, e);
+                    }
+                }
+            }));
+        }
+        workers.forEach(Thread::start);
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        Exception e = unexpected.get();
+        require(e == null, e == null ? null : "unexpected " + e.getClass().getSimpleName() + ": " + e.getMessage());
+    }
+
+    private static void seats(EventManagementSystem system) {
+        HashMap<String, Integer> active = new HashMap<>();
+        HashSet<String> activePairs = new HashSet<>();
+        for (Registration reg : system.getRegistrationService().getAll()) {
+            if (reg.getStatus().equals("ACTIVE")) {
+                active.merge(reg.getEventId(), 1, Integer::sum);
+                require(activePairs.add(reg.getUserId() + ":" + reg.getEventId()),
+                        reg.getUserId() + " is ACTIVE twice for " + reg.getEventId());
+            }
+        }
+        for (Event event : system.getEvents()) {
+            int taken = active.getOrDefault(event.getEventId(), 0);
+            require(taken <= event.getCapacity(),
+                    event.getEventId() + " has " + taken + " ACTIVE for " + event.getCapacity() + " seats");
+            require(taken == event.getRegisteredCount(),
+                    event.getEventId() + " counts " + event.getRegisteredCount() + " taken, " + taken + " ACTIVE");
+        }
+    }
+
+    private static void mixed(RegistrationService service, Random random, String userId, Event event) throws Exception {
+        int op = random.nextInt(100);
+        if (op < 35) {
+            service.register(userId, event.getEventId());
+        } else if (op < 60) {
+            List<Registration> own = service.getByUser(userId);
+            if (!own.isEmpty()) {
+                service.cancel(userId, own.get(random.nextInt(own.size())).getRegistrationId());
+            }
+        } else if (op < 90) {
+            service.joinWaitlist(userId, event.getEventId());
+        } else {
+            service.changeCapacity(event, 1 + random.nextInt(8));
+        }
+    }
+
+    private static void waitlists(EventManagementSystem system) {
+        RegistrationService service = system.getRegistrationService();
+        HashMap<String, Integer> waiting = new HashMap<>();
+        HashSet<String> waitingPairs = new HashSet<>();
+        for (Registration reg : service.getAll()) {
+            if (reg.getStatus().equals("WAITLISTED")) {
+                waiting.merge(reg.getEventId(), 1, Integer::sum);
+                require(waitingPairs.add(reg.getUserId() + ":" + reg.getEventId()),
+                        reg.getUserId() + " is on the waitlist twice for " + reg.getEventId());
+            }
+        }
+        for (Event event : system.getEvents()) {
+            int queued = waiting.getOrDefault(event.getEventId(), 0);
+            require(queued == service.waitlistSize(event.getEventId()), event.getEventId() + " waitlist holds "
+                    + service.waitlistSize(event.getEventId()) + ", " + queued + " WAITLISTED");
+            require(queued == 0 || event.getRegisteredCount() == event.getCapacity(),
+                    event.getEventId() + " has free seats and " + queued + " waiting");
+        }
+    }
+
+    // Records: values with everything the codec has to escape
+
+    private static final String AWKWARD = "#a, b\\c \"d\"\n\re \u00fcn\u00ef \u65e5\u672c";
+    private static final List<Person> USERS = List.of(
+            new Admin("U-1", AWKWARD, "admin@example.com", AWKWARD),
+            new Organizer("#U-2", "Org, Inc.", "org@example.com", "555-0100"),
+            new Attendee("U\\3", "\u00c5sa", "asa@example.com", ""));
+    private static final List<Event> EVENTS = List.of(
+            new Conference("E-1", AWKWARD, AWKWARD, "01-01-2030", AWKWARD, 7, "#U-2", 3),
+            new Workshop("E,2", "Workshop", "", "02-01-2030", "Lab", 1, "#U-2", 4),
+            new Concert("E-3", "Concert", "Live\nonly", "03-01-2030", "Arena", 500, "U-1", AWKWARD));
+    private static final List<Registration> REGISTRATIONS = List.of(
+            new Registration("R-1", "U\\3", "E-1", "2025-01-01", "ACTIVE"),
+            new Registration("R,2", "U\\3", "E,2", "2025-01-02", "WAITLISTED"),
+            new Registration("#R-3", "U-1", "E-3", "odd date", "CANCELLED"));
+
+    // Each record must format to one line that parses back to the same record
+    private static <T> void roundTrip(List<T> records, Function<T, String> format,
+                                      Function<RecordCodec.Reader, T> parse) throws IOException {
+        for (T record : records) {
+            String line = format.apply(record);
+            require(line.indexOf('\n') < 0 && line.indexOf('\r') < 0, "record spans lines: " + line);
+            RecordCodec.Reader reader = new RecordCodec.Reader(line);
+            T parsed = reader.next() ? parse.apply(reader) : null;
+            require(parsed != null && format.apply(parsed).equals(line), "did not survive: " + line);
+        }
+    }
+
+    // Journal: the system goes down, its journal gets a torn tail, and it comes back twice
+
+    private static void restartAfterTornJournal(EventManagementSystem system) throws Exception {
+        String before = digest(system);
+        system.getStorage().close();
+        appendTorn(new File(System.getProperty("ems.dataDir"), "journal.log"));
+
+        EventManagementSystem restarted = new EventManagementSystem(new CsvStorageEngine());
+        require(digest(restarted).equals(before), "state after the restart differs from before it");
+        Event event = restarted.getEvent("E0");
+        restarted.getRegistrationService().changeCapacity(event, event.getCapacity() + 1);
+        String after = digest(restarted);
+        restarted.getStorage().close();
+
+        EventManagementSystem again = new EventManagementSystem(new CsvStorageEngine());
+        String reloaded = digest(again);
+        again.getStorage().close();
+        require(reloaded.equals(after), "a write made after the restart was lost by the next one");
+    }
+
+    // A record cut off before its newline, as left by a crash mid-append
+    private static void appendTorn(File file) throws IOException {
+        try (FileOutputStream out = new FileOutputStream(file, true)) {
+            out.write("BATCH,1,PUT_USER\\,U-torn".getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    // Lsm
+
+    private static void batchRoundTrip() throws IOException {
+        WriteBatch batch = new WriteBatch();
+        USERS.forEach(batch::putUser);
+        EVENTS.forEach(batch::putEvent);
+        REGISTRATIONS.forEach(batch::putRegistration);
+        batch.deleteUser(AWKWARD).deleteEvent("E,2").deleteRegistration("#R-3");
+        String line = batch.encode();
+        RecordCodec.Reader reader = new RecordCodec.Reader(line);
+        require(reader.next() && "BATCH".equals(reader.field()), "not a BATCH record: " + line);
+        WriteBatch decoded = WriteBatch.decode(reader);
+        require(decoded != null && decoded.encode().equals(line), "did not survive: " + line);
+    }
+
+    // Puts, updates and deletes of registrations whose IDs are not in key order
+    private void restartAfterTornWal() throws IOException {
+        String path = new File(System.getProperty("ems.dataDir"), "lsm").getPath();
+        LinkedHashMap<String, String> expected = new LinkedHashMap<>();
+        Random random = new Random(seed);
+        LsmStorageEngine engine = new LsmStorageEngine(path);
+        for (int i = 0; i < 500; i++) {
+            String id = "R" + random.nextInt(300);
+            if (random.nextInt(5) == 0) {
+                engine.write(new WriteBatch().deleteRegistration(id));
+                expected.remove(id);
+            } else {
+                Registration reg = new Registration(id, "A" + random.nextInt(40), "E" + random.nextInt(8),
+                        "2025-01-01", random.nextBoolean() ? "ACTIVE" : "CANCELLED");
+                engine.write(new WriteBatch().putRegistration(reg));
+                expected.put(id, RecordCodec.formatRegistration(reg));
+            }
+        }
+        engine.close();
+        File[] wals = new File(path).listFiles((d, name) -> name.startsWith("wal-"));
+        require(wals != null && wals.length == 1, "expected one WAL in " + path);
+        appendTorn(wals[0]);
+
+        engine = new LsmStorageEngine(path);
+        try {
+            requireRegistrations(engine, expected.values(), "after the restart");
+            Registration late = new Registration("R-late", "A1", "E1", "2025-01-02", "ACTIVE");
+            engine.write(new WriteBatch().putRegistration(late));
+            expected.put(late.getRegistrationId(), RecordCodec.formatRegistration(late));
+        } finally {
+            engine.close();
+        }
+        engine = new LsmStorageEngine(path);
+        try {
+            requireRegistrations(engine, expected.values(), "after the second restart");
+        } finally {
+            engine.close();
+        }
+    }
+
+    private static void requireRegistrations(StorageEngine engine, Collection<String> expected, String when)
+            throws IOException {
+        ArrayList<Registration> loaded = new ArrayList<>();
+        engine.load(new ArrayList<>(), new ArrayList<>(), loaded);
+        ArrayList<String> records = new ArrayList<>();
+        loaded.forEach(reg -> records.add(RecordCodec.formatRegistration(reg)));
+        require(new HashSet<>(records).equals(new HashSet<>(expected)), "registrations differ " + when);
+        require(records.equals(new ArrayList<>(expected)), "registrations out of creation order " + when);
+    }
+
+    private static String digest(EventManagementSystem system) {
+        return records(system.getUsers(), system.getEvents(), system.getRegistrationService().getAll());
+    }
+
+    // Every record keyed by table and ID, so order does not matter
+    private static String records(Collection<? extends Person> users, Collection<? extends Event> events,
+                                  Collection<? extends Registration> registrations) {
+        TreeMap<String, String> records = new TreeMap<>();
+        users.forEach(user -> records.put("u" + user.getId(), RecordCodec.formatUser(user)));
+        events.forEach(event -> records.put("e" + event.getEventId(), RecordCodec.formatEvent(event)));
+        registrations.forEach(reg -> records.put("r" + reg.getRegistrationId(), RecordCodec.formatRegistration(reg)));
+        return records.toString();
+    }
+
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}
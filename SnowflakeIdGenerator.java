@@ -0,0 +1,56 @@
+import java.util.concurrent.atomic.AtomicLong;
+
+// 64-bit IDs laid out as | 41 bits ms since EPOCH | 10 bits node | 12 bits sequence |.
+// A single CAS on the last issued value keeps them unique and increasing per node
+// without locking; when a millisecond's 4096 sequence numbers run out the generator
+// borrows the next millisecond instead of waiting.
+public class SnowflakeIdGenerator implements IdGenerator {
+    private static final long EPOCH = 1735689600000L; // 2025-01-01T00:00:00Z
+    private static final int NODE_BITS = 10;
+    private static final int SEQUENCE_BITS = 12;
+    private static final long MAX_NODE = (1L << NODE_BITS) - 1;
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+    private static final int TIMESTAMP_SHIFT = NODE_BITS + SEQUENCE_BITS;
+
+    private final long node;
+    private final AtomicLong last = new AtomicLong();
+
+    public SnowflakeIdGenerator(long node) {
+        if (node < 0 || node > MAX_NODE) {
+            throw new IllegalArgumentException("Node ID must be between 0 and " + MAX_NODE);
+        }
+        this.node = node;
+    }
+
+    public long nextLong() {
+        while (true) {
+            long previous = last.get();
+            long previousTime = previous >>> TIMESTAMP_SHIFT;
+            long now = System.currentTimeMillis() - EPOCH;
+            long next;
+            if (now > previousTime) {
+                next = (now << TIMESTAMP_SHIFT) | (node << SEQUENCE_BITS);
+            } else if ((previous & SEQUENCE_MASK) < SEQUENCE_MASK) {
+                next = previous + 1;
+            } else {
+                next = ((previousTime + 1) << TIMESTAMP_SHIFT) | (node << SEQUENCE_BITS);
+            }
+            if (last.compareAndSet(previous, next)) {
+                return next;
+            }
+        }
+    }
+
+    @Override
+    public String nextId(String prefix) {
+        return prefix + nextLong();
+    }
+
+    public static long timestampOf(long id) {
+        return (id >>> TIMESTAMP_SHIFT) + EPOCH;
+    }
+
+    public static long nodeOf(long id) {
+        return (id >>> SEQUENCE_BITS) & MAX_NODE;
+    }
+}
\ No newline at end of file
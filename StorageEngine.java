@@ -0,0 +1,82 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+
+// Durable home of users, events and registrations. The running system keeps its own in-memory
+// indexes: it loads them from the engine at startup and persists every change as one atomic
+// WriteBatch. Keyed reads and range scans are for tools and for data sets that outgrow memory.
+//   -Dems.storage=csv     users/events/registrations.txt plus the journal (default)
+//   -Dems.storage=memory  nothing persisted; for tests and benchmarks
+//   -Dems.storage=lsm     embedded log-structured store in -Dems.storageDir (default ems-data)
+public interface StorageEngine {
+
+    static StorageEngine open() throws IOException {
+        String kind = System.getProperty("ems.storage", "csv");
+        switch (kind) {
+            case "csv":
+                return new CsvStorageEngine();
+            case "memory":
+                return new MemoryStorageEngine();
+            case "lsm":
+                return new LsmStorageEngine(System.getProperty("ems.storageDir", "ems-data"));
+            default:
+                throw new IllegalArgumentException("Unknown storage engine " + kind + " (csv, memory or lsm)");
+        }
+    }
+
+    // Everything stored, appended to the lists
+    void load(ArrayList<Person> users, ArrayList<Event> events, ArrayList<Registration> registrations)
+            throws IOException;
+
+    // Null when absent
+    Person getUser(String userId) throws IOException;
+    Event getEvent(String eventId) throws IOException;
+    Registration getRegistration(String registrationId) throws IOException;
+
+    // Keys in [fromKey, toKey) in ascending key order, at most limit of them; null bounds are open
+    List<Person> scanUsers(String fromKey, String toKey, int limit) throws IOException;
+    List<Event> scanEvents(String fromKey, String toKey, int limit) throws IOException;
+    List<Registration> scanRegistrations(String fromKey, String toKey, int limit) throws IOException;
+
+    // Queues the batch behind every batch appended before it and returns a ticket for await.
+    // Nothing is written here, so callers append while still holding their own locks (the log
+    // then follows the order they changed memory in) and await after releasing them. Values are
+    // encoded now: a put records the entity as of this call.
+    long append(WriteBatch batch);
+
+    // Returns once the ticket's batch, and every batch appended before it, is stored (fsynced in
+    // durable mode). A batch is stored whole or not at all. A thrown await may not be durable, so
+    // the caller undoes the in-memory change or fails the operation; the engine then refuses
+    // further writes until it is reopened, since a failed fsync says nothing about what reached
+    // the disk.
+    void await(long ticket) throws IOException;
+
+    default void write(WriteBatch batch) throws IOException {
+        await(append(batch));
+    }
+
+    // await for a change already made in memory: on failure undo (when not null) takes it back
+    // and the operation fails with the cause unchecked
+    default void awaitOrUndo(long ticket, Runnable undo) {
+        try {
+            await(ticket);
+        } catch (IOException e) {
+            if (undo != null) {
+                undo.run();
+            }
+            throw new UncheckedIOException("Could not save the change: " + e.getMessage(), e);
+        }
+    }
+
+    default void writeOrUndo(WriteBatch batch, Runnable undo) {
+        awaitOrUndo(append(batch), undo);
+    }
+
+    // Replaces everything stored with the given state (imports, generated data sets)
+    void replaceAll(ArrayList<Person> users, ArrayList<Event> events, ArrayList<Registration> registrations)
+            throws IOException;
+
+    void flush();
+    void close();
+}
@@ -0,0 +1,109 @@
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Per-event FIFO of WAITLISTED registrations. Waitlisted entries are ordinary registrations, so
+// they are persisted like any other, and a queue's order is the order they were added in (file
+// and journal order on load). Promotion takes the head in O(1) without touching other registrations.
+public class Waitlist {
+    private final ConcurrentHashMap<String, LinkedHashMap<String, Registration>> queues; // eventId -> regId -> reg
+    private final Set<String> waiting; // userId:eventId
+
+    public Waitlist() {
+        queues = new ConcurrentHashMap<>();
+        waiting = ConcurrentHashMap.newKeySet();
+    }
+
+    public void add(Registration reg) {
+        LinkedHashMap<String, Registration> queue = queues.computeIfAbsent(reg.getEventId(), k -> new LinkedHashMap<>());
+        synchronized (queue) {
+            queue.put(reg.getRegistrationId(), reg);
+        }
+        waiting.add(key(reg.getUserId(), reg.getEventId()));
+    }
+
+    public boolean remove(Registration reg) {
+        LinkedHashMap<String, Registration> queue = queues.get(reg.getEventId());
+        if (queue == null) {
+            return false;
+        }
+        synchronized (queue) {
+            if (queue.remove(reg.getRegistrationId()) == null) {
+                return false;
+            }
+        }
+        waiting.remove(key(reg.getUserId(), reg.getEventId()));
+        return true;
+    }
+
+    // Removes and returns the longest-waiting registration, or null if nobody is waiting
+    public Registration poll(String eventId) {
+        LinkedHashMap<String, Registration> queue = queues.get(eventId);
+        if (queue == null) {
+            return null;
+        }
+        Registration head;
+        synchronized (queue) {
+            Iterator<Registration> it = queue.values().iterator();
+            if (!it.hasNext()) {
+                return null;
+            }
+            head = it.next();
+            it.remove();
+        }
+        waiting.remove(key(head.getUserId(), eventId));
+        return head;
+    }
+
+    public List<Registration> removeEvent(String eventId) {
+        LinkedHashMap<String, Registration> queue = queues.remove(eventId);
+        if (queue == null) {
+            return new ArrayList<>();
+        }
+        synchronized (queue) {
+            for (Registration reg : queue.values()) {
+                waiting.remove(key(reg.getUserId(), eventId));
+            }
+            return new ArrayList<>(queue.values());
+        }
+    }
+
+    public boolean contains(String userId, String eventId) {
+        return waiting.contains(key(userId, eventId));
+    }
+
+    // 1-based place in the event's queue, or 0 if the registration is not waiting
+    public int position(String eventId, String registrationId) {
+        LinkedHashMap<String, Registration> queue = queues.get(eventId);
+        if (queue == null) {
+            return 0;
+        }
+        synchronized (queue) {
+            int position = 1;
+            for (String id : queue.keySet()) {
+                if (id.equals(registrationId)) {
+                    return position;
+                }
+                position++;
+            }
+        }
+        return 0;
+    }
+
+    public int size(String eventId) {
+        LinkedHashMap<String, Registration> queue = queues.get(eventId);
+        if (queue == null) {
+            return 0;
+        }
+        synchronized (queue) {
+            return queue.size();
+        }
+    }
+
+    private static String key(String userId, String eventId) {
+        return userId + ":" + eventId;
+    }
+}
@@ -0,0 +1,164 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+// Keyed puts and deletes that a StorageEngine applies together or not at all. Entities are held
+// by reference and encoded when the batch is appended to an engine, so a put records the
+// object's state at that point. Serialized as a single line: BATCH,<count>,<op>,<op>... where each op
+// is itself an escaped record: PUT_USER,<user> | DELETE_USER,<id> | PUT_EVENT,<event> |
+// DELETE_EVENT,<id> | PUT_REGISTRATION,<registration> | DELETE_REGISTRATION,<id>
+public class WriteBatch {
+    public static final char USERS = 'u';
+    public static final char EVENTS = 'e';
+    public static final char REGISTRATIONS = 'r';
+
+    public static class Op {
+        private final char table;
+        private final String key;
+        private final Object value;
+
+        private Op(char table, String key, Object value) {
+            this.table = table;
+            this.key = key;
+            this.value = value;
+        }
+
+        public char getTable() { return table; }
+        public String getKey() { return key; }
+        // The entity to store, or null for a delete
+        public Object getValue() { return value; }
+        public boolean isDelete() { return value == null; }
+
+        // The entity's record line, as in the data files
+        public String encodeValue() {
+            switch (table) {
+                case USERS: return RecordCodec.formatUser((Person) value);
+                case EVENTS: return RecordCodec.formatEvent((Event) value);
+                default: return RecordCodec.formatRegistration((Registration) value);
+            }
+        }
+    }
+
+    private final ArrayList<Op> ops = new ArrayList<>();
+
+    public WriteBatch putUser(Person user) {
+        ops.add(new Op(USERS, user.getId(), user));
+        return this;
+    }
+
+    public WriteBatch deleteUser(String userId) {
+        ops.add(new Op(USERS, userId, null));
+        return this;
+    }
+
+    public WriteBatch putEvent(Event event) {
+        ops.add(new Op(EVENTS, event.getEventId(), event));
+        return this;
+    }
+
+    public WriteBatch deleteEvent(String eventId) {
+        ops.add(new Op(EVENTS, eventId, null));
+        return this;
+    }
+
+    public WriteBatch putRegistration(Registration reg) {
+        ops.add(new Op(REGISTRATIONS, reg.getRegistrationId(), reg));
+        return this;
+    }
+
+    public WriteBatch deleteRegistration(String registrationId) {
+        ops.add(new Op(REGISTRATIONS, registrationId, null));
+        return this;
+    }
+
+    public List<Op> getOps() {
+        return ops;
+    }
+
+    public boolean isEmpty() {
+        return ops.isEmpty();
+    }
+
+    public String encode() {
+        return encode(encodeValues());
+    }
+
+    // Record lines of the puts, index-aligned with getOps(); null for deletes
+    public String[] encodeValues() {
+        String[] values = new String[ops.size()];
+        for (int i = 0; i < values.length; i++) {
+            Op op = ops.get(i);
+            values[i] = op.isDelete() ? null : op.encodeValue();
+        }
+        return values;
+    }
+
+    public String encode(String[] values) {
+        StringBuilder line = new StringBuilder("BATCH");
+        RecordCodec.append(line, ops.size());
+        StringBuilder op = new StringBuilder(128);
+        for (int i = 0; i < values.length; i++) {
+            Op o = ops.get(i);
+            op.setLength(0);
+            op.append(o.isDelete() ? "DELETE_" : "PUT_").append(tableName(o.table));
+            if (o.isDelete()) {
+                RecordCodec.append(op, o.key);
+            } else {
+                op.append(',').append(values[i]);
+            }
+            RecordCodec.append(line, op.toString());
+        }
+        return line.toString();
+    }
+
+    // Decodes the fields after "BATCH" on the reader's current record; null if it is malformed
+    public static WriteBatch decode(RecordCodec.Reader reader) {
+        int count = reader.intField();
+        WriteBatch batch = new WriteBatch();
+        String field;
+        while ((field = reader.field()) != null) {
+            RecordCodec.Reader op = new RecordCodec.Reader(field);
+            try {
+                if (!op.next()) {
+                    return null;
+                }
+            } catch (IOException e) {
+                return null;
+            }
+            String kind = op.field();
+            switch (kind) {
+                case "PUT_USER": {
+                    Person user = RecordCodec.parseUser(op);
+                    if (user == null) return null;
+                    batch.putUser(user);
+                    break;
+                }
+                case "PUT_EVENT": {
+                    Event event = RecordCodec.parseEvent(op);
+                    if (event == null) return null;
+                    batch.putEvent(event);
+                    break;
+                }
+                case "PUT_REGISTRATION": {
+                    Registration reg = RecordCodec.parseRegistration(op);
+                    if (reg == null) return null;
+                    batch.putRegistration(reg);
+                    break;
+                }
+                case "DELETE_USER": batch.deleteUser(op.field()); break;
+                case "DELETE_EVENT": batch.deleteEvent(op.field()); break;
+                case "DELETE_REGISTRATION": batch.deleteRegistration(op.field()); break;
+                default: return null;
+            }
+        }
+        return batch.ops.size() == count ? batch : null;
+    }
+
+    private static String tableName(char table) {
+        switch (table) {
+            case USERS: return "USER";
+            case EVENTS: return "EVENT";
+            default: return "REGISTRATION";
+        }
+    }
+}
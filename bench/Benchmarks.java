@@ -0,0 +1,263 @@
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+// Micro-benchmarks for the core hot paths, JMH-style: every benchmark runs warmup iterations
+// first, then timed iterations of fixed wall-clock length; results go through a sink so the
+// JIT cannot drop the work. The data files it writes and reloads go to a fresh temporary
+// directory, removed afterwards, unless -Dems.dataDir names one:
+//
+//   gradle bench -PbenchArgs="--sizes 1000,10000" [-PbenchHeap=16g]
+//   java -Xmx16g Benchmarks [--sizes 1000,10000,100000,1000000,10000000]
+//                           [--warmup N] [--iterations N] [--millis N] [--csv FILE] [--force]
+//
+// Sizes are registration counts; each dataset has size/10 attendees, size/50 events and one
+// organizer per 10 events, every event owned by one of them.
+public class Benchmarks {
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("dd-MM-yyyy");
+    private static final String[] DATA_FILES = {"users.txt", "events.txt", "registrations.txt",
+            "journal.log", "journal.compacting", "snapshot.bin", "registrations.dat"};
+
+    private static volatile Object sink;
+
+    private int warmup = 3;
+    private int iterations = 5;
+    private long iterationMillis = 500;
+    private PrintWriter csv;
+
+    private interface Op {
+        Object run(int i) throws Exception;
+    }
+
+    private static class Dataset {
+        ArrayList<Person> users = new ArrayList<>();
+        ArrayList<Event> events = new ArrayList<>();
+        ArrayList<Registration> registrations = new ArrayList<>();
+    }
+
+    public static void main(String[] args) throws Exception {
+        Benchmarks bench = new Benchmarks();
+        int[] sizes = {1000, 10000, 100000, 1000000};
+        String csvFile = null;
+        boolean force = false;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--sizes": sizes = parseSizes(args[++i]); break;
+                case "--warmup": bench.warmup = Integer.parseInt(args[++i]); break;
+                case "--iterations": bench.iterations = Integer.parseInt(args[++i]); break;
+                case "--millis": bench.iterationMillis = Long.parseLong(args[++i]); break;
+                case "--csv": csvFile = args[++i]; break;
+                case "--force": force = true; break;
+                default:
+                    System.out.println("Usage: java Benchmarks [--sizes N,N,...] [--warmup N] [--iterations N]"
+                            + " [--millis N] [--csv FILE] [--force]");
+                    return;
+            }
+        }
+        // Read by FileHandler when it first loads, which is after this
+        String dataDir = System.getProperty("ems.dataDir");
+        File scratch = null;
+        if (dataDir == null) {
+            scratch = Files.createTempDirectory("ems-bench").toFile();
+            dataDir = scratch.getPath();
+            System.setProperty("ems.dataDir", dataDir);
+        }
+        for (String file : DATA_FILES) {
+            if (new File(dataDir, file).exists() && !force) {
+                System.out.println(file + " exists in " + dataDir + "; pass --force to overwrite it.");
+                return;
+            }
+        }
+
+        if (csvFile != null) {
+            bench.csv = new PrintWriter(new BufferedWriter(new FileWriter(csvFile)));
+            bench.csv.println("benchmark,size,ns_per_op,stddev_ns,ops_per_sec");
+        }
+        System.out.printf("%-34s %10s %14s %12s %14s%n", "Benchmark", "Size", "ns/op", "+/-", "ops/s");
+        try {
+            for (int size : sizes) {
+                bench.runAll(size);
+            }
+        } finally {
+            FileHandler.closeJournal();
+            if (bench.csv != null) {
+                bench.csv.close();
+            }
+            if (scratch != null) {
+                clearDataFiles();
+                scratch.delete();
+            }
+        }
+    }
+
+    private void runAll(int size) throws Exception {
+        Dataset data = generate(size, new Random(size));
+        clearDataFiles();
+
+        // Whole-file persistence: one op is a full save or load of the file
+        measure("FileHandler.saveUsers", size, i -> { FileHandler.saveUsers(data.users); return null; });
+        measure("FileHandler.saveEvents", size, i -> { FileHandler.saveEvents(data.events); return null; });
+        measure("FileHandler.saveRegistrations", size, i -> {
+            FileHandler.saveRegistrations(data.registrations);
+            return null;
+        });
+        measure("FileHandler.loadUsers", size, i -> FileHandler.loadUsers());
+        measure("FileHandler.loadEvents", size, i -> FileHandler.loadEvents());
+        measure("FileHandler.loadRegistrations", size, i -> FileHandler.loadRegistrations());
+
+        // Point lookups against the live system loaded from those files
+        EventManagementSystem system = new EventManagementSystem();
+        Random random = new Random(42);
+        int lookups = 1 << 16;
+        String[] dates = new String[lookups];
+        String[] userIds = new String[lookups];
+        String[] eventIds = new String[lookups];
+        for (int i = 0; i < lookups; i++) {
+            dates[i] = data.events.get(random.nextInt(data.events.size())).getDate();
+            userIds[i] = data.users.get(random.nextInt(data.users.size())).getId();
+            eventIds[i] = data.events.get(random.nextInt(data.events.size())).getEventId();
+        }
+        int mask = lookups - 1;
+        measure("searchEventsByDate", size, i -> system.searchEventsByDate(dates[i & mask]));
+        measure("searchUserById", size, i -> system.searchUserById(userIds[i & mask]));
+        RegistrationService registrations = system.getRegistrationService();
+        measure("duplicateCheck(isRegistered)", size,
+                i -> registrations.isRegistered(userIds[i & mask], eventIds[(i >>> 3) & mask]));
+
+        // Sorting a shuffled copy each time; the shuffle is part of the op and scales as O(n)
+        ArrayList<Event> shuffled = new ArrayList<>(data.events);
+        Random shuffle = new Random(7);
+        measure("sortEventsByDate(+shuffle)", size, i -> {
+            Collections.shuffle(shuffled, shuffle);
+            shuffled.sort(EventManagementSystem.BY_DATE);
+            return shuffled.get(0);
+        });
+
+        // viewReports reads running counters; the analytics report is the full-scan aggregate
+        measure("getReportCounts", size, i -> system.getReportCounts());
+        measure("AnalyticsReport.compute", size,
+                i -> AnalyticsReport.compute(data.users, data.events, data.registrations, 10));
+
+        FileHandler.closeJournal();
+        clearDataFiles();
+    }
+
+    private void measure(String name, int size, Op op) throws Exception {
+        for (int w = 0; w < warmup; w++) {
+            iterate(op);
+        }
+        double[] nanosPerOp = new double[iterations];
+        for (int it = 0; it < iterations; it++) {
+            nanosPerOp[it] = iterate(op);
+        }
+
+        double mean = 0;
+        for (double v : nanosPerOp) {
+            mean += v;
+        }
+        mean /= iterations;
+        double variance = 0;
+        for (double v : nanosPerOp) {
+            variance += (v - mean) * (v - mean);
+        }
+        double stddev = iterations > 1 ? Math.sqrt(variance / (iterations - 1)) : 0;
+        double opsPerSecond = 1e9 / mean;
+
+        System.out.printf("%-34s %10d %14.1f %12.1f %14.1f%n", name, size, mean, stddev, opsPerSecond);
+        if (csv != null) {
+            csv.printf("%s,%d,%.1f,%.1f,%.1f%n", name, size, mean, stddev, opsPerSecond);
+            csv.flush();
+        }
+    }
+
+    // Runs op in growing batches until the iteration time is used up; returns mean ns per op
+    private double iterate(Op op) throws Exception {
+        long deadline = System.nanoTime() + iterationMillis * 1_000_000L;
+        long start = System.nanoTime();
+        long ops = 0;
+        int batch = 1;
+        long now;
+        do {
+            for (int i = 0; i < batch; i++) {
+                sink = op.run((int) ops + i);
+            }
+            ops += batch;
+            now = System.nanoTime();
+            if (batch < (1 << 20)) {
+                batch <<= 1;
+            }
+        } while (now < deadline);
+        return (double) (now - start) / ops;
+    }
+
+    private static Dataset generate(int size, Random random) {
+        Dataset data = new Dataset();
+        int userCount = Math.max(100, size / 10);
+        int eventCount = Math.max(20, size / 50);
+        int organizerCount = Math.max(1, eventCount / 10);
+        for (int i = 0; i < userCount; i++) {
+            data.users.add(new Attendee("U" + i, "User " + i, "user" + i + "@example.com", "555-" + i));
+        }
+        for (int i = 0; i < organizerCount; i++) {
+            data.users.add(new Organizer("O" + i, "Organizer " + i, "organizer" + i + "@example.com", "556-" + i));
+        }
+
+        LocalDate firstDay = LocalDate.of(2027, 1, 1);
+        int[] taken = new int[eventCount];
+        ArrayList<Registration> registrations = data.registrations;
+        // Registration i goes to user i % users and its (i / users)-th event after a per-user offset,
+        // which keeps every (user, event) pair unique without a lookup
+        for (int i = 0; i < size; i++) {
+            int user = i % userCount;
+            int event = (int) ((user * 2654435761L + i / userCount) % eventCount);
+            taken[event]++;
+            registrations.add(new Registration("R" + i, "U" + user, "E" + event,
+                    firstDay.minusDays(random.nextInt(365)).toString(), "ACTIVE"));
+        }
+        for (int i = 0; i < eventCount; i++) {
+            String date = firstDay.plusDays(random.nextInt(365)).format(DATE_FORMAT);
+            int capacity = taken[i] + 10;
+            String organizer = "O" + i % organizerCount;
+            Event event;
+            switch (i % 3) {
+                case 0:
+                    event = new Conference("E" + i, "Conference " + i, "Talks", date, "Hall " + i % 40, capacity, organizer, 5);
+                    break;
+                case 1:
+                    event = new Workshop("E" + i, "Workshop " + i, "Hands on", date, "Lab " + i % 40, capacity, organizer, 4);
+                    break;
+                default:
+                    event = new Concert("E" + i, "Concert " + i, "Live", date, "Arena " + i % 40, capacity, organizer, "Band");
+            }
+            event.setRegisteredCount(taken[i]);
+            data.events.add(event);
+        }
+        return data;
+    }
+
+    private static void clearDataFiles() {
+        for (String file : DATA_FILES) {
+            new File(System.getProperty("ems.dataDir"), file).delete();
+        }
+    }
+
+    private static int[] parseSizes(String list) {
+        List<Integer> sizes = new ArrayList<>();
+        for (String s : list.split(",")) {
+            sizes.add(Integer.parseInt(s.trim()));
+        }
+        int[] result = new int[sizes.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = sizes.get(i);
+        }
+        return result;
+    }
+}